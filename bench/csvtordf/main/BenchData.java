@@ -0,0 +1,128 @@
+/**
+ * <h1>BenchData.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Deterministic CSV data shared by the JMH benchmarks.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Random;
+
+// Jena imports
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.Property;
+
+/**
+ * Builds headers, lines and column metadata for benchmark parameters.
+ */
+class BenchData {
+
+  private static final long SEED = 42;
+
+  private BenchData() {}
+
+  /**
+   * @param columns Number of columns.
+   * @return String[] - header names.
+   */
+  static String[] headers(int columns) {
+    String[] headers = new String[columns];
+    for (int i = 0; i < columns; i++) {
+      headers[i] = "col" + i;
+    }
+    return headers;
+  }
+
+  /**
+   * Build CSV lines.
+   *
+   * @param rows Number of lines.
+   * @param columns Fields per line.
+   * @param quoteDensity Fraction of fields that are quoted and contain a comma.
+   * @return String[] - lines without terminators.
+   */
+  static String[] lines(int rows, int columns, double quoteDensity) {
+    Random rand = new Random(SEED);
+    String[] lines = new String[rows];
+    StringBuilder sb = new StringBuilder();
+    for (int r = 0; r < rows; r++) {
+      sb.setLength(0);
+      for (int c = 0; c < columns; c++) {
+        if (c > 0) sb.append(',');
+        int value = rand.nextInt(1000);
+        if (rand.nextDouble() < quoteDensity) {
+          sb.append("\"value ").append(value).append(", \"\"quoted\"\"\"");
+        } else {
+          sb.append("value").append(value);
+        }
+      }
+      lines[r] = sb.toString();
+    }
+    return lines;
+  }
+
+  /**
+   * Write a CSV file with a header line.
+   *
+   * @return File - temporary file, deleted on exit.
+   */
+  static File file(int rows, int columns, double quoteDensity) throws IOException {
+    File file = File.createTempFile("csvtordf-bench", ".csv");
+    file.deleteOnExit();
+    CsvGenerator generator = new CsvGenerator();
+    generator.setRows(rows);
+    generator.setColumns(columns);
+    generator.setCardinality(1000);
+    generator.setQuotedFraction(quoteDensity);
+    generator.setSeed(SEED);
+    generator.generate(file.getPath());
+    return file;
+  }
+
+  /**
+   * Mark the first resourceRatio of the columns as resources.
+   */
+  static void markResources(CsvToRdf handler, double resourceRatio) {
+    ArrayList<Property> properties = handler.getProperties();
+    int resources = (int) Math.round(properties.size() * resourceRatio);
+    for (int i = 0; i < resources; i++) {
+      handler.setDatatypes(properties.get(i), false, "");
+    }
+  }
+
+  /**
+   * Build properties for the processor benchmark.
+   */
+  static ArrayList<Property> properties(int columns) {
+    Model model = ModelFactory.createDefaultModel();
+    ArrayList<Property> properties = new ArrayList<>();
+    for (String header : headers(columns)) {
+      properties.add(model.createProperty("http://example.org/csv#", header));
+    }
+    return properties;
+  }
+
+  /**
+   * Build column metadata with the first resourceRatio of the columns as resources.
+   */
+  static ArrayList<PropertyMetadata> metadata(int columns, double resourceRatio) {
+    ArrayList<PropertyMetadata> propData = new ArrayList<>();
+    int resources = (int) Math.round(columns * resourceRatio);
+    for (int i = 0; i < columns; i++) {
+      if (i < resources) {
+        propData.add(new PropertyMetadata(false, null, ""));
+      } else {
+        propData.add(new PropertyMetadata(true, XSDDatatype.XSDstring, ""));
+      }
+    }
+    return propData;
+  }
+}
@@ -0,0 +1,64 @@
+/**
+ * <h1>OutputModelBenchmark.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Measures serializing a converted model in each output format,
+ * plain and gzip compressed.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+// JMH imports
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OutputModelBenchmark {
+
+  @Param({"50000"})
+  public int rows;
+
+  @Param({"10"})
+  public int columns;
+
+  @Param({"0.0", "0.5"})
+  public double resourceRatio;
+
+  @Param({"rdfxml", "rdfxml-plain", "ntriples", "turtle", "thrift"})
+  public String format;
+
+  @Param({"false", "true"})
+  public boolean gzip;
+
+  private CsvToRdf handler;
+  private File output;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    File input = BenchData.file(rows, columns, 0.0);
+    handler = new CsvToRdf();
+    handler.initModel(BenchData.headers(columns));
+    BenchData.markResources(handler, resourceRatio);
+    if (!handler.readInputFile(input.getPath(), Runtime.getRuntime().availableProcessors())) {
+      throw new IllegalStateException(handler.getLastErrorMsg());
+    }
+    output = File.createTempFile("csvtordf-bench", ".out");
+    output.deleteOnExit();
+  }
+
+  @Benchmark
+  public long outputModel() throws Exception {
+    handler.outputModel(output.getPath(), RdfOutput.format(format), gzip);
+    return output.length();
+  }
+}
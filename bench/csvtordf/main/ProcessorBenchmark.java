@@ -0,0 +1,93 @@
+/**
+ * <h1>ProcessorBenchmark.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Measures MultiThreadCsvProcessor on one batch of lines, both
+ * building triples only and inserting them into a model.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Jena imports
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.ModelFactory;
+
+// JMH imports
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProcessorBenchmark {
+
+  private static final int BATCH = 100;
+
+  @Param({"10", "50", "200"})
+  public int columns;
+
+  @Param({"0.0", "0.5"})
+  public double quoteDensity;
+
+  @Param({"0.0", "0.5", "1.0"})
+  public double resourceRatio;
+
+  private LineBatch batch;
+  private MultiThreadCsvProcessor building;
+  private MultiThreadCsvProcessor inserting;
+
+  /**
+   * Sink that only hands the triples to the Blackhole.
+   */
+  private static class BlackholeSink implements TripleSink {
+    Blackhole bh;
+    public void start() {}
+    public void accept(Triple[] batch) { bh.consume(batch); }
+    public void finish() {}
+  }
+
+  private final BlackholeSink blackholeSink = new BlackholeSink();
+
+  @Setup(Level.Trial)
+  public void setup() {
+    batch = new LineBatch();
+    for (String line : BenchData.lines(BATCH, columns, quoteDensity)) {
+      batch.append(line.toCharArray(), 0, line.length());
+      batch.endLine();
+    }
+    building = processor(blackholeSink);
+  }
+
+  @Setup(Level.Iteration)
+  public void freshModel() {
+    // A fresh model per iteration keeps it from growing without bound
+    inserting = processor(new ModelSink(ModelFactory.createDefaultModel()));
+  }
+
+  private MultiThreadCsvProcessor processor(TripleSink sink) {
+    return new MultiThreadCsvProcessor(sink, "http://example.org/csv#", "line", BenchData.properties(columns),
+                                       BenchData.metadata(columns, resourceRatio), "http://example.org/csv#CsvNode",
+                                       null, new BatchSizer(BATCH, false, sink), new ConversionStats(), null, null,
+                                       new AtomicReference<Exception>());
+  }
+
+  @Benchmark
+  public void buildTriples(Blackhole bh) throws Exception {
+    blackholeSink.bh = bh;
+    building.processBatch(batch);
+  }
+
+  @Benchmark
+  public void insertIntoModel() throws Exception {
+    inserting.processBatch(batch);
+  }
+}
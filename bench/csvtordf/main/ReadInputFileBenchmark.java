@@ -0,0 +1,59 @@
+/**
+ * <h1>ReadInputFileBenchmark.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Measures a full CsvToRdf.readInputFile conversion at 1..N threads.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+// JMH imports
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReadInputFileBenchmark {
+
+  @Param({"100000"})
+  public int rows;
+
+  @Param({"10", "50"})
+  public int columns;
+
+  @Param({"0.0", "0.5"})
+  public double quoteDensity;
+
+  @Param({"0.0", "0.5"})
+  public double resourceRatio;
+
+  @Param({"1", "2", "4", "8"})
+  public int threads;
+
+  private File file;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    file = BenchData.file(rows, columns, quoteDensity);
+  }
+
+  @Benchmark
+  public long readInputFile() {
+    CsvToRdf handler = new CsvToRdf();
+    handler.initModel(BenchData.headers(columns));
+    BenchData.markResources(handler, resourceRatio);
+    if (!handler.readInputFile(file.getPath(), threads)) {
+      throw new IllegalStateException(handler.getLastErrorMsg());
+    }
+    return handler.getModel().size();
+  }
+}
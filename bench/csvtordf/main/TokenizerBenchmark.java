@@ -0,0 +1,47 @@
+/**
+ * <h1>TokenizerBenchmark.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Measures tokenizing single CSV lines of varying width and quoting.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.concurrent.TimeUnit;
+
+// JMH imports
+import org.openjdk.jmh.annotations.*;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenizerBenchmark {
+
+  @Param({"10", "50", "200"})
+  public int columns;
+
+  @Param({"0.0", "0.5", "1.0"})
+  public double quoteDensity;
+
+  private String[] lines;
+  private CsvTokenizer tokenizer;
+  private int next = 0;
+
+  @Setup
+  public void setup() {
+    lines = BenchData.lines(64, columns, quoteDensity);
+    tokenizer = new CsvTokenizer();
+  }
+
+  @Benchmark
+  public int tokenize() {
+    next = (next + 1) & 63;
+    return tokenizer.tokenize(lines[next]);
+  }
+}
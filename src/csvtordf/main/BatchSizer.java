@@ -0,0 +1,125 @@
+/**
+ * <h1>BatchSizer.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Decides how many lines go into each batch handed to the workers.
+ * With a fixed size every batch has the same number of lines. In
+ * adaptive mode the size is tuned while converting from what the
+ * workers report: batches grow while a large share of their time
+ * is spent waiting for the model lock, as the per-batch lock and
+ * hand-off costs dominate, and shrink while workers sit idle
+ * waiting for work, so the load spreads over all of them.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed or adaptive batch size for one conversion.
+ */
+class BatchSizer {
+
+  static final int MIN_BATCH = 16;
+  static final int MAX_BATCH = 16384;
+
+  // How often the adaptive size is reconsidered
+  private static final long ADJUST_INTERVAL_NANOS = 50000000L; // 50 ms
+  // Share of busy time spent waiting on the lock above which batches grow
+  private static final double HIGH_LOCK_WAIT = 0.10;
+  // Share of worker time spent idle above which batches shrink
+  private static final double HIGH_IDLE = 0.20;
+
+  private final boolean adaptive;
+  private final TripleSink sink;
+  private volatile int size;
+
+  private final LongAdder rows = new LongAdder();
+  private final LongAdder busyNanos = new LongAdder();
+  private final LongAdder idleNanos = new LongAdder();
+
+  // Totals at the last adjustment, guarded by this
+  private long lastAdjust = System.nanoTime();
+  private long lastRows, lastBusy, lastIdle, lastLockWait;
+
+  /**
+   * @param size Initial batch size.
+   * @param adaptive true to tune the size while converting.
+   * @param sink Sink the workers insert into, for its lock wait time.
+   */
+  BatchSizer(int size, boolean adaptive, TripleSink sink) {
+    this.size = size;
+    this.adaptive = adaptive;
+    this.sink = sink;
+  }
+
+  /**
+   * Get the number of lines to put in the next batch.
+   *
+   * @return int - batch size.
+   */
+  int next() {
+    if (adaptive && System.nanoTime() - lastAdjust >= ADJUST_INTERVAL_NANOS) {
+      synchronized (this) {
+        long now = System.nanoTime();
+        if (now - lastAdjust >= ADJUST_INTERVAL_NANOS) {
+          adjust(now);
+        }
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Record a processed batch.
+   *
+   * @param batchRows Lines in the batch.
+   * @param nanos Time spent processing it, including waiting on the sink.
+   */
+  void recordBatch(int batchRows, long nanos) {
+    rows.add(batchRows);
+    busyNanos.add(nanos);
+  }
+
+  /**
+   * Record time a worker spent waiting for a batch.
+   *
+   * @param nanos Idle time.
+   */
+  void recordIdle(long nanos) {
+    idleNanos.add(nanos);
+  }
+
+  /**
+   * @return int - current batch size.
+   */
+  int getSize() { return size; }
+
+  private void adjust(long now) {
+    long r = rows.sum(), busy = busyNanos.sum(), idle = idleNanos.sum(), lockWait = sink.getLockWaitNanos();
+    long dRows = r - lastRows, dBusy = busy - lastBusy, dIdle = idle - lastIdle, dLock = lockWait - lastLockWait;
+    if (dBusy <= 0) return; // nothing processed yet
+
+    double lockShare = (double) dLock / dBusy;
+    double idleShare = (double) dIdle / (dBusy + dIdle);
+    int old = size;
+    if (lockShare > HIGH_LOCK_WAIT) {
+      size = Math.min(MAX_BATCH, size * 2);
+    } else if (idleShare > HIGH_IDLE && lockShare < HIGH_LOCK_WAIT / 2) {
+      size = Math.max(MIN_BATCH, size / 2);
+    }
+    if (CsvToRdf.g_verbosity >= 2 && size != old) {
+      double rowsPerSec = dRows * 1e9 / (now - lastAdjust);
+      CsvToRdf.g_log.println(String.format("  Batch size %d -> %d (%.0f rows/s, lock wait %.0f%%, idle %.0f%%)",
+                                       old, size, rowsPerSec, lockShare * 100, idleShare * 100));
+    }
+    lastAdjust = now;
+    lastRows = r;
+    lastBusy = busy;
+    lastIdle = idle;
+    lastLockWait = lockWait;
+  }
+}
@@ -0,0 +1,397 @@
+/**
+ * <h1>CompactGraph.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * In-memory graph for bulk conversion. A conversion appends every
+ * triple once and then mostly writes the graph out, so instead of
+ * keeping a Triple object and three hash indexes per triple, nodes
+ * are stored once in a dictionary and triples as three int columns
+ * of node ids, about 12 bytes per triple.
+ * <p>
+ * Appending does no index work at all. The first read after appending
+ * sorts the columns into subject, predicate, object order with a radix
+ * sort and drops duplicates, which makes lookups by subject a binary
+ * search and keeps the triples of a subject together when written.
+ * Lookups by predicate or object build a sorted permutation the first
+ * time they are needed.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+// Jena imports
+import org.apache.jena.graph.GraphEvents;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.GraphBase;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.util.iterator.NiceIterator;
+import org.apache.jena.util.iterator.NullIterator;
+
+/**
+ * Append-optimized graph of dictionary encoded triples with lazy indexes.
+ * Adding is not thread safe, callers serialize it as they do for a plain
+ * in-memory graph. Concurrent reads are safe once adding has stopped.
+ * Literals are matched as terms, "1"^^xsd:int does not find "01"^^xsd:int.
+ * Two literals with the same lexical form, datatype IRI and language are
+ * the same term even if their datatype objects are distinct instances.
+ */
+class CompactGraph extends GraphBase {
+
+  private static final int INITIAL_CAPACITY = 1024;
+
+  // Node dictionary: id -> node, and an open addressing table of id + 1
+  private Node[] nodes = new Node[INITIAL_CAPACITY];
+  private int nodeCount = 0;
+  private int[] table = new int[INITIAL_CAPACITY * 2];
+
+  // Triple columns of node ids
+  private int[] subjects = new int[INITIAL_CAPACITY];
+  private int[] predicates = new int[INITIAL_CAPACITY];
+  private int[] objects = new int[INITIAL_CAPACITY];
+  private int size = 0;
+
+  // Triples before this position are sorted by subject, predicate, object and unique
+  private int sorted = 0;
+  // Permutations sorted by predicate, object, subject and by object, subject, predicate
+  private int[] pos = null;
+  private int[] osp = null;
+
+  /* DICTIONARY */
+
+  /**
+   * @return int - id of a node, or -1 if it is not in the graph and add is false.
+   */
+  private int idOf(Node node, boolean add) {
+    int mask = table.length - 1;
+    int i = mix(node.hashCode()) & mask;
+    int entry;
+    while ((entry = table[i]) != 0) {
+      if (sameTerm(nodes[entry - 1], node)) return entry - 1;
+      i = (i + 1) & mask;
+    }
+    if (!add) return -1;
+    if (nodeCount == nodes.length) nodes = Arrays.copyOf(nodes, grow(nodes.length));
+    int id = nodeCount++;
+    nodes[id] = node;
+    table[i] = id + 1;
+    // Keep the table at most half full
+    if (nodeCount * 2 > table.length) rehash(table.length * 2);
+    return id;
+  }
+
+  /**
+   * Literals are the same term when their lexical form, datatype IRI and
+   * language are, even if their datatype objects differ.
+   *
+   * @return boolean - true if both nodes are the same RDF term.
+   */
+  private static boolean sameTerm(Node a, Node b) {
+    if (a.equals(b)) return true;
+    return a.isLiteral() && b.isLiteral()
+        && a.getLiteralLexicalForm().equals(b.getLiteralLexicalForm())
+        && a.getLiteralDatatypeURI().equals(b.getLiteralDatatypeURI())
+        && a.getLiteralLanguage().equals(b.getLiteralLanguage());
+  }
+
+  private void rehash(int capacity) {
+    int[] newTable = new int[capacity];
+    int mask = capacity - 1;
+    for (int id = 0; id < nodeCount; id++) {
+      int i = mix(nodes[id].hashCode()) & mask;
+      while (newTable[i] != 0) i = (i + 1) & mask;
+      newTable[i] = id + 1;
+    }
+    table = newTable;
+  }
+
+  private static int mix(int h) {
+    h *= 0x9e3779b9;
+    return h ^ (h >>> 16);
+  }
+
+  private static int grow(int capacity) {
+    return capacity + (capacity >> 1) + 16;
+  }
+
+  /* ADDING AND DELETING */
+
+  @Override
+  public void performAdd(Triple t) {
+    int s = idOf(t.getSubject(), true);
+    int p = idOf(t.getPredicate(), true);
+    int o = idOf(t.getObject(), true);
+    if (size == subjects.length) {
+      int capacity = grow(size);
+      subjects = Arrays.copyOf(subjects, capacity);
+      predicates = Arrays.copyOf(predicates, capacity);
+      objects = Arrays.copyOf(objects, capacity);
+    }
+    subjects[size] = s;
+    predicates[size] = p;
+    objects[size] = o;
+    size++;
+  }
+
+  @Override
+  public synchronized void performDelete(Triple t) {
+    seal();
+    int s = idOf(t.getSubject(), false);
+    int p = idOf(t.getPredicate(), false);
+    int o = idOf(t.getObject(), false);
+    if (s < 0 || p < 0 || o < 0) return;
+    int at = find(s, p, o);
+    if (at < 0) return;
+    // Deletes are rare in a conversion, shift the columns down
+    System.arraycopy(subjects, at + 1, subjects, at, size - at - 1);
+    System.arraycopy(predicates, at + 1, predicates, at, size - at - 1);
+    System.arraycopy(objects, at + 1, objects, at, size - at - 1);
+    size--;
+    sorted = size;
+    pos = null;
+    osp = null;
+  }
+
+  @Override
+  public synchronized void clear() {
+    nodes = new Node[INITIAL_CAPACITY];
+    nodeCount = 0;
+    table = new int[INITIAL_CAPACITY * 2];
+    subjects = new int[INITIAL_CAPACITY];
+    predicates = new int[INITIAL_CAPACITY];
+    objects = new int[INITIAL_CAPACITY];
+    size = 0;
+    sorted = 0;
+    pos = null;
+    osp = null;
+    getEventManager().notifyEvent(this, GraphEvents.removeAll);
+  }
+
+  /* INDEXES */
+
+  /**
+   * Sort the columns and drop duplicates if anything was added since the
+   * last read. Every read calls this first, which also makes the columns
+   * written by the adding thread visible to the reading one.
+   */
+  private synchronized void seal() {
+    if (sorted == size) return;
+    int[] perm = identity(size);
+    perm = radixSort(perm, objects);
+    perm = radixSort(perm, predicates);
+    perm = radixSort(perm, subjects);
+    int[] s = new int[Math.max(size, INITIAL_CAPACITY)];
+    int[] p = new int[s.length];
+    int[] o = new int[s.length];
+    int n = 0;
+    for (int i : perm) {
+      if (n > 0 && s[n - 1] == subjects[i] && p[n - 1] == predicates[i] && o[n - 1] == objects[i]) continue;
+      s[n] = subjects[i];
+      p[n] = predicates[i];
+      o[n] = objects[i];
+      n++;
+    }
+    subjects = s;
+    predicates = p;
+    objects = o;
+    size = n;
+    sorted = n;
+    pos = null;
+    osp = null;
+  }
+
+  private synchronized int[] pos() {
+    seal();
+    if (pos == null) {
+      // The columns are in subject order and the sort is stable, so the subject needs no pass
+      int[] perm = identity(size);
+      perm = radixSort(perm, objects);
+      pos = radixSort(perm, predicates);
+    }
+    return pos;
+  }
+
+  private synchronized int[] osp() {
+    seal();
+    if (osp == null) {
+      osp = radixSort(identity(size), objects);
+    }
+    return osp;
+  }
+
+  private static int[] identity(int n) {
+    int[] perm = new int[n];
+    for (int i = 0; i < n; i++) {
+      perm[i] = i;
+    }
+    return perm;
+  }
+
+  /**
+   * Stable LSD radix sort of a permutation by one column, 16 bits at a time.
+   * The high half is skipped while all ids fit in 16 bits.
+   *
+   * @return int[] - the sorted permutation, which may be a new array.
+   */
+  private int[] radixSort(int[] perm, int[] key) {
+    int[] tmp = new int[perm.length];
+    int passes = nodeCount > 0x10000 ? 2 : 1;
+    int[] count = new int[0x10001];
+    for (int pass = 0; pass < passes; pass++) {
+      int shift = pass * 16;
+      Arrays.fill(count, 0);
+      for (int i : perm) {
+        count[((key[i] >>> shift) & 0xffff) + 1]++;
+      }
+      for (int d = 0; d < 0x10000; d++) {
+        count[d + 1] += count[d];
+      }
+      for (int i : perm) {
+        tmp[count[(key[i] >>> shift) & 0xffff]++] = i;
+      }
+      int[] swap = perm;
+      perm = tmp;
+      tmp = swap;
+    }
+    return perm;
+  }
+
+  /* FINDING */
+
+  /**
+   * @return int - first position in [from, to) of the permutation (or of
+   * the columns if null) where the column is at least the key.
+   */
+  private static int lowerBound(int[] perm, int from, int to, int[] column, int key) {
+    while (from < to) {
+      int mid = (from + to) >>> 1;
+      int v = column[perm == null ? mid : perm[mid]];
+      if (v < key) from = mid + 1;
+      else to = mid;
+    }
+    return from;
+  }
+
+  private static int upperBound(int[] perm, int from, int to, int[] column, int key) {
+    while (from < to) {
+      int mid = (from + to) >>> 1;
+      int v = column[perm == null ? mid : perm[mid]];
+      if (v <= key) from = mid + 1;
+      else to = mid;
+    }
+    return from;
+  }
+
+  /**
+   * @return int - position of a triple in the sorted columns, or -1.
+   */
+  private int find(int s, int p, int o) {
+    int from = lowerBound(null, 0, size, subjects, s);
+    int to = upperBound(null, from, size, subjects, s);
+    from = lowerBound(null, from, to, predicates, p);
+    to = upperBound(null, from, to, predicates, p);
+    int at = lowerBound(null, from, to, objects, o);
+    return (at < to && objects[at] == o) ? at : -1;
+  }
+
+  @Override
+  protected ExtendedIterator<Triple> graphBaseFind(Triple pattern) {
+    seal();
+    Node sn = pattern.getMatchSubject();
+    Node pn = pattern.getMatchPredicate();
+    Node on = pattern.getMatchObject();
+    int s = sn == null ? -1 : idOf(sn, false);
+    int p = pn == null ? -1 : idOf(pn, false);
+    int o = on == null ? -1 : idOf(on, false);
+    // A concrete node that is not in the dictionary matches nothing
+    if ((sn != null && s < 0) || (pn != null && p < 0) || (on != null && o < 0)) return NullIterator.instance();
+
+    int from = 0;
+    int to = size;
+    if (sn != null) {
+      // Columns are sorted by subject, predicate, object
+      from = lowerBound(null, from, to, subjects, s);
+      to = upperBound(null, from, to, subjects, s);
+      if (pn != null) {
+        from = lowerBound(null, from, to, predicates, p);
+        to = upperBound(null, from, to, predicates, p);
+        if (on != null) {
+          from = lowerBound(null, from, to, objects, o);
+          to = upperBound(null, from, to, objects, o);
+        }
+        return new Range(null, from, to, -1);
+      }
+      return new Range(null, from, to, on != null ? o : -1);
+    }
+    if (pn != null) {
+      int[] perm = pos();
+      from = lowerBound(perm, from, to, predicates, p);
+      to = upperBound(perm, from, to, predicates, p);
+      if (on != null) {
+        from = lowerBound(perm, from, to, objects, o);
+        to = upperBound(perm, from, to, objects, o);
+      }
+      return new Range(perm, from, to, -1);
+    }
+    if (on != null) {
+      int[] perm = osp();
+      from = lowerBound(perm, from, to, objects, o);
+      to = upperBound(perm, from, to, objects, o);
+      return new Range(perm, from, to, -1);
+    }
+    return new Range(null, 0, size, -1);
+  }
+
+  @Override
+  protected int graphBaseSize() {
+    seal();
+    return size;
+  }
+
+  /**
+   * Iterator over a range of the columns or of a permutation, creating
+   * Triples as it goes.
+   */
+  private class Range extends NiceIterator<Triple> {
+    private final int[] perm;
+    private final int[] s = subjects;
+    private final int[] p = predicates;
+    private final int[] o = objects;
+    private final Node[] dictionary = nodes;
+    private final int to;
+    private final int object; // object to filter on, or -1
+    private int next;
+
+    Range(int[] perm, int from, int to, int object) {
+      this.perm = perm;
+      this.next = from;
+      this.to = to;
+      this.object = object;
+      skip();
+    }
+
+    private void skip() {
+      if (object < 0) return;
+      while (next < to && o[perm == null ? next : perm[next]] != object) next++;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < to;
+    }
+
+    @Override
+    public Triple next() {
+      if (next >= to) throw new NoSuchElementException();
+      int i = perm == null ? next : perm[next];
+      next++;
+      skip();
+      return new Triple(dictionary[s[i]], dictionary[p[i]], dictionary[o[i]]);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+/**
+ * <h1>CompressedInput.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Opens CSV input that may be compressed. The compression format
+ * is detected from the leading bytes of the file, so compressed
+ * files can be converted without unpacking them to disk first.
+ * <p>
+ * Decompression runs on its own thread a few blocks ahead of the
+ * reader, overlapping with tokenizing instead of adding to it.
+ * Concatenated gzip members and bzip2 streams are read as one.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.io.*;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Apache imports
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+
+/**
+ * Opens plain or compressed input files.
+ */
+class CompressedInput {
+
+  private CompressedInput() {}
+
+  /**
+   * Detect the compression format of a file.
+   *
+   * @param path Path to the file.
+   *
+   * @return String - commons-compress format name, or null if not compressed.
+   */
+  static String detect(String path) throws IOException {
+    try (InputStream in = new BufferedInputStream(new FileInputStream(path))) {
+      return detect(in);
+    }
+  }
+
+  private static String detect(InputStream in) throws IOException {
+    try {
+      return CompressorStreamFactory.detect(in);
+    } catch (CompressorException e) {
+      return null; // no known signature
+    } catch (IllegalArgumentException e) {
+      return null; // empty file
+    }
+  }
+
+  /**
+   * Open a file for reading, decompressing it if needed.
+   *
+   * @param path Path to the file.
+   * @param stats Stats to add the bytes read from the file to, or null.
+   *
+   * @return InputStream - uncompressed contents of the file.
+   */
+  static InputStream open(String path, ConversionStats stats) throws IOException {
+    InputStream file = new FileInputStream(path);
+    // Count bytes of the file itself, so progress matches the file size
+    if (stats != null) file = new CountingInputStream(file, stats);
+    InputStream in = new BufferedInputStream(file);
+    String format = detect(in);
+    if (format == null) {
+      return in;
+    }
+    try {
+      InputStream decompressed = new CompressorStreamFactory(true).createCompressorInputStream(format, in);
+      return new ReadAheadInputStream(decompressed);
+    } catch (CompressorException e) {
+      in.close();
+      // e.g. xz or zstd without their optional libraries
+      throw new IOException("Cannot read " + format + " compressed input: " + e.getMessage(), e);
+    }
+  }
+}
+
+/**
+ * Input stream reading its source on a separate thread, up to a
+ * bounded number of blocks ahead of the consumer.
+ */
+class ReadAheadInputStream extends InputStream {
+
+  static final int BLOCK_SIZE = 1 << 20;
+  private static final int BLOCKS_AHEAD = 4;
+  // Marks the end of the source
+  private static final byte[] EOF = new byte[0];
+
+  private final InputStream source;
+  private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(BLOCKS_AHEAD);
+  private final Thread reader;
+  private volatile IOException failure;
+  private volatile boolean closed = false;
+  private byte[] current = null;
+  private int pos = 0;
+
+  ReadAheadInputStream(InputStream source) {
+    this.source = source;
+    reader = new Thread(this::fill, "csvtordf-decompress");
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  private void fill() {
+    try {
+      while (!closed) {
+        byte[] block = new byte[BLOCK_SIZE];
+        int n = 0;
+        int r;
+        while (n < block.length && (r = source.read(block, n, block.length - n)) >= 0) {
+          n += r;
+        }
+        if (n > 0) queue.put(n == block.length ? block : Arrays.copyOf(block, n));
+        if (n < block.length) break;
+      }
+    } catch (IOException e) {
+      failure = e;
+    } catch (RuntimeException | Error e) {
+      // Decoders may throw unchecked exceptions on corrupt input
+      failure = new IOException("Failed to decompress input: " + e, e);
+    } catch (InterruptedException e) {
+      // closed by the consumer
+      return;
+    } finally {
+      // Always wake the consumer, it rethrows any failure at the end marker
+      if (!closed) {
+        try {
+          queue.put(EOF);
+        } catch (InterruptedException ie) {
+          // closed while finishing, nobody is reading
+        }
+      }
+    }
+  }
+
+  /**
+   * @return boolean - false at the end of the source.
+   */
+  private boolean nextBlock() throws IOException {
+    if (current == EOF) return false;
+    if (current != null && pos < current.length) return true;
+    try {
+      current = queue.take();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while decompressing");
+    }
+    pos = 0;
+    if (current == EOF) {
+      if (failure != null) throw failure;
+      return false;
+    }
+    return true;
+  }
+
+  public int read() throws IOException {
+    if (!nextBlock()) return -1;
+    return current[pos++] & 0xff;
+  }
+
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) return 0;
+    if (!nextBlock()) return -1;
+    int n = Math.min(len, current.length - pos);
+    System.arraycopy(current, pos, b, off, n);
+    pos += n;
+    return n;
+  }
+
+  public int available() {
+    return (current != null && current != EOF) ? current.length - pos : 0;
+  }
+
+  public void close() throws IOException {
+    closed = true;
+    reader.interrupt();
+    source.close();
+  }
+}
@@ -0,0 +1,210 @@
+/**
+ * <h1>ConversionStats.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Timings and counters of one conversion, broken down by stage so
+ * a slow run can be traced to reading, building triples, inserting
+ * them (including waiting on the model lock) or writing the output.
+ * <p>
+ * Stage times are summed over all threads working on that stage,
+ * so with several workers they can add up to more than the total
+ * wall time of the conversion.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-stage metrics of one CSV conversion.
+ */
+public class ConversionStats {
+
+  /**
+   * Stages of a conversion.
+   */
+  public enum Stage {
+    READ("Read"),       // reading and decoding lines
+    BUILD("Build"),     // tokenizing lines and creating triples
+    INSERT("Insert"),   // handing triples to the model, store or stream
+    WRITE("Write");     // serializing the model
+
+    private final String name;
+    Stage(String name) { this.name = name; }
+    public String toString() { return name; }
+  }
+
+  private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+  private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+  private final LongAdder[] wallNanos = new LongAdder[Stage.values().length];
+  private final LongAdder[] cpuNanos = new LongAdder[Stage.values().length];
+  private final LongAdder rows = new LongAdder();
+  private final LongAdder triples = new LongAdder();
+  private final LongAdder bytesRead = new LongAdder();
+  private volatile int peakQueueDepth = 0;
+  // Single writer ring buffer, capacity 0 when not used
+  private volatile int writerQueueCapacity = 0;
+  private volatile double writerQueueOccupancy = 0;
+  private volatile long producerWaits = 0;
+  private volatile long writerWaits = 0;
+  private volatile long lockWaitNanos = 0;
+  private volatile long totalNanos = 0;
+
+  ConversionStats() {
+    for (int i = 0; i < wallNanos.length; i++) {
+      wallNanos[i] = new LongAdder();
+      cpuNanos[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * @return long - CPU time of the current thread in nanoseconds, or 0 if not supported.
+   */
+  static long cpuTime() {
+    return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0;
+  }
+
+  void addStage(Stage stage, long wall, long cpu) {
+    wallNanos[stage.ordinal()].add(wall);
+    cpuNanos[stage.ordinal()].add(cpu);
+  }
+
+  void addRows(long n) { rows.add(n); }
+
+  void addTriples(long n) { triples.add(n); }
+
+  void addBytesRead(long n) { bytesRead.add(n); }
+
+  /**
+   * Record the current depth of the batch queue. Only called by the reader.
+   */
+  void recordQueueDepth(int depth) {
+    if (depth > peakQueueDepth) peakQueueDepth = depth;
+  }
+
+  /**
+   * Record how full the single writer ring buffer was. Many producer waits
+   * and a nearly full buffer mean the writer is the bottleneck, many writer
+   * waits and a nearly empty buffer mean the workers are.
+   */
+  void recordWriterQueue(int capacity, double averageOccupancy, long producerWaits, long writerWaits) {
+    this.writerQueueCapacity = capacity;
+    this.writerQueueOccupancy = averageOccupancy;
+    this.producerWaits = producerWaits;
+    this.writerWaits = writerWaits;
+  }
+
+  void setLockWaitNanos(long nanos) { lockWaitNanos = nanos; }
+
+  void setTotalNanos(long nanos) { totalNanos = nanos; }
+
+  /**
+   * @return long - time spent in a stage in milliseconds, summed over threads.
+   */
+  public long getWallMillis(Stage stage) { return wallNanos[stage.ordinal()].sum() / 1000000; }
+
+  /**
+   * @return long - CPU time spent in a stage in milliseconds, summed over threads.
+   */
+  public long getCpuMillis(Stage stage) { return cpuNanos[stage.ordinal()].sum() / 1000000; }
+
+  /**
+   * @return long - wall time from opening the input to the last triple stored, in milliseconds.
+   */
+  public long getTotalMillis() { return totalNanos / 1000000; }
+
+  /**
+   * @return long - time spent waiting on the model lock in milliseconds, summed over threads.
+   */
+  public long getLockWaitMillis() { return lockWaitNanos / 1000000; }
+
+  /**
+   * @return long - number of CSV rows converted.
+   */
+  public long getRows() { return rows.sum(); }
+
+  /**
+   * @return long - number of triples produced.
+   */
+  public long getTriples() { return triples.sum(); }
+
+  /**
+   * @return long - number of bytes read from the input file.
+   */
+  public long getBytesRead() { return bytesRead.sum(); }
+
+  /**
+   * @return int - largest number of batches waiting for a worker.
+   */
+  public int getPeakQueueDepth() { return peakQueueDepth; }
+
+  /**
+   * @return double - average fraction of the writer ring buffer in use, 0 if not used.
+   */
+  public double getWriterQueueOccupancy() {
+    return writerQueueCapacity > 0 ? writerQueueOccupancy / writerQueueCapacity : 0;
+  }
+
+  /**
+   * @return long - times a worker found the writer ring buffer full.
+   */
+  public long getProducerWaits() { return producerWaits; }
+
+  /**
+   * @return long - times the writer thread found the ring buffer empty.
+   */
+  public long getWriterWaits() { return writerWaits; }
+
+  /**
+   * @return double - rows converted per second of total time.
+   */
+  public double getRowsPerSecond() { return perSecond(getRows()); }
+
+  /**
+   * @return double - triples produced per second of total time.
+   */
+  public double getTriplesPerSecond() { return perSecond(getTriples()); }
+
+  private double perSecond(long count) {
+    return totalNanos > 0 ? count * 1e9 / totalNanos : 0;
+  }
+
+  /**
+   * Short summary for display in the GUI.
+   *
+   * @return String - total time and throughput.
+   */
+  public String summary() {
+    return String.format("Execution Time: %d ms (%.0f rows/s, %.0f triples/s)",
+                         getTotalMillis(), getRowsPerSecond(), getTriplesPerSecond());
+  }
+
+  /**
+   * Full breakdown, one line per figure.
+   *
+   * @return String - all metrics.
+   */
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(String.format("  Conversion  : %d ms%n", getTotalMillis()));
+    for (Stage stage : Stage.values()) {
+      sb.append(String.format("  %-12s: %d ms wall, %d ms CPU%n", stage, getWallMillis(stage), getCpuMillis(stage)));
+    }
+    sb.append(String.format("  Lock wait   : %d ms%n", getLockWaitMillis()));
+    sb.append(String.format("  Rows        : %d (%.0f/s)%n", getRows(), getRowsPerSecond()));
+    sb.append(String.format("  Triples     : %d (%.0f/s)%n", getTriples(), getTriplesPerSecond()));
+    sb.append(String.format("  Bytes read  : %d%n", getBytesRead()));
+    sb.append(String.format("  Peak queue  : %d batches", getPeakQueueDepth()));
+    if (writerQueueCapacity > 0) {
+      sb.append(String.format("%n  Writer queue: %.0f%% full on average, %d producer waits, %d writer waits",
+                              getWriterQueueOccupancy() * 100, getProducerWaits(), getWriterWaits()));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,46 @@
+/**
+ * <h1>CountingInputStream.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Counts the bytes of the input as they are read, for the read
+ * stage of the ConversionStats and for the progress of a conversion.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream adding the number of bytes read to a ConversionStats.
+ */
+class CountingInputStream extends FilterInputStream {
+  private final ConversionStats stats;
+
+  CountingInputStream(InputStream in, ConversionStats stats) {
+    super(in);
+    this.stats = stats;
+  }
+
+  public int read() throws IOException {
+    int b = super.read();
+    if (b >= 0) stats.addBytesRead(1);
+    return b;
+  }
+
+  public int read(byte[] b, int off, int len) throws IOException {
+    int n = super.read(b, off, len);
+    if (n > 0) stats.addBytesRead(n);
+    return n;
+  }
+
+  public long skip(long n) throws IOException {
+    long skipped = super.skip(n);
+    stats.addBytesRead(skipped);
+    return skipped;
+  }
+}
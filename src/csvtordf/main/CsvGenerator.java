@@ -0,0 +1,296 @@
+/**
+ * <h1>CsvGenerator.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Generates synthetic CSV files for scale and throughput testing.
+ * Output only depends on the settings and the seed, so the same
+ * file can be recreated anywhere instead of being checked in.
+ * <p>
+ * Rows are formatted straight into a byte buffer, without building
+ * Strings, so large files are written at about disk speed.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.io.*;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Apache imports
+import org.apache.commons.cli.*;
+
+/**
+ * Deterministic, seedable CSV generator.
+ */
+public class CsvGenerator {
+
+  public static final long DEFAULT_SEED = 42;
+  public static final long DEFAULT_ROWS = 1000;
+  public static final int DEFAULT_COLUMNS = 10;
+
+  // Output buffer, flushed whenever it cannot hold another cell
+  private static final int BUFFER_SIZE = 1 << 20;
+  // Longest cell: quote + 'c' + column + '_' + value + ", x" + quote
+  private static final int MAX_CELL = 48;
+  private static final long GOLDEN = 0x9e3779b97f4a7c15L;
+
+  private long rows = DEFAULT_ROWS;
+  private int columns = DEFAULT_COLUMNS;
+  private double quotedFraction = 0.0;
+  private long[] cardinality = new long[DEFAULT_COLUMNS]; // 0 for unique values
+  private int labelColumn = -1;
+  private long seed = DEFAULT_SEED;
+
+  /**
+   * @param rows Number of data rows, not counting the header.
+   */
+  public void setRows(long rows) {
+    if (rows < 0) throw new IllegalArgumentException("Rows must not be negative");
+    this.rows = rows;
+  }
+
+  /**
+   * Set the number of columns. Resets the per column cardinality.
+   *
+   * @param columns Number of columns.
+   */
+  public void setColumns(int columns) {
+    if (columns <= 0) throw new IllegalArgumentException("Columns must be a positive integer");
+    this.columns = columns;
+    this.cardinality = new long[columns];
+    if (labelColumn >= columns) labelColumn = -1;
+  }
+
+  /**
+   * @param quotedFraction Fraction of cells that are quoted and contain an embedded comma.
+   */
+  public void setQuotedFraction(double quotedFraction) {
+    if (quotedFraction < 0 || quotedFraction > 1) {
+      throw new IllegalArgumentException("Quoted fraction must be between 0 and 1");
+    }
+    this.quotedFraction = quotedFraction;
+  }
+
+  /**
+   * Set the number of distinct values of every column.
+   *
+   * @param cardinality Distinct values per column, 0 for a unique value in every row.
+   */
+  public void setCardinality(long cardinality) {
+    if (cardinality < 0) throw new IllegalArgumentException("Cardinality must not be negative");
+    Arrays.fill(this.cardinality, cardinality);
+  }
+
+  /**
+   * Set the number of distinct values of one column.
+   *
+   * @param column Column index.
+   * @param cardinality Distinct values, 0 for a unique value in every row.
+   */
+  public void setCardinality(int column, long cardinality) {
+    if (column < 0 || column >= columns) throw new IllegalArgumentException("No column " + column);
+    if (cardinality < 0) throw new IllegalArgumentException("Cardinality must not be negative");
+    this.cardinality[column] = cardinality;
+  }
+
+  /**
+   * Set a column holding a unique, IRI-safe value in every row, suitable
+   * for use as the label of the row resources.
+   *
+   * @param column Column index, or -1 for none.
+   */
+  public void setLabelColumn(int column) {
+    if (column < -1 || column >= columns) throw new IllegalArgumentException("No column " + column);
+    this.labelColumn = column;
+  }
+
+  /**
+   * @param seed Seed of the random values, the same seed gives the same file.
+   */
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Write a CSV file.
+   *
+   * @param path Path to the output file.
+   *
+   * @return long - number of bytes written.
+   */
+  public long generate(String path) throws IOException {
+    try (OutputStream out = new FileOutputStream(path)) {
+      return generate(out);
+    }
+  }
+
+  /**
+   * Write CSV to a stream. The stream is not closed.
+   *
+   * @param out Output stream.
+   *
+   * @return long - number of bytes written.
+   */
+  public long generate(OutputStream out) throws IOException {
+    SplittableRandom rand = new SplittableRandom(seed);
+    byte[] buf = new byte[BUFFER_SIZE];
+    int pos = 0;
+    long written = 0;
+
+    // Header
+    for (int c = 0; c < columns; c++) {
+      if (pos + MAX_CELL > buf.length) {
+        out.write(buf, 0, pos);
+        written += pos;
+        pos = 0;
+      }
+      if (c > 0) buf[pos++] = ',';
+      buf[pos++] = 'c';
+      buf[pos++] = 'o';
+      buf[pos++] = 'l';
+      pos = putLong(buf, pos, c);
+    }
+    buf[pos++] = '\n';
+
+    for (long r = 0; r < rows; r++) {
+      for (int c = 0; c < columns; c++) {
+        if (pos + MAX_CELL > buf.length) {
+          out.write(buf, 0, pos);
+          written += pos;
+          pos = 0;
+        }
+        if (c > 0) buf[pos++] = ',';
+        if (c == labelColumn) {
+          buf[pos++] = 'r';
+          buf[pos++] = 'o';
+          buf[pos++] = 'w';
+          pos = putLong(buf, pos, r);
+          continue;
+        }
+        long value = cardinality[c] == 0 ? r : rand.nextLong(cardinality[c]);
+        // Quoting depends on the value only, so a column keeps its cardinality
+        boolean quoted = quotedFraction > 0 && unit(mix(seed + c * GOLDEN + value)) < quotedFraction;
+        if (quoted) buf[pos++] = '"';
+        buf[pos++] = 'c';
+        pos = putLong(buf, pos, c);
+        buf[pos++] = '_';
+        pos = putLong(buf, pos, value);
+        if (quoted) {
+          buf[pos++] = ',';
+          buf[pos++] = ' ';
+          buf[pos++] = 'x';
+          buf[pos++] = '"';
+        }
+      }
+      buf[pos++] = '\n';
+    }
+    out.write(buf, 0, pos);
+    return written + pos;
+  }
+
+  /**
+   * @return long - well mixed bits of the input (murmur3 finalizer).
+   */
+  private static long mix(long z) {
+    z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+    z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return z ^ (z >>> 33);
+  }
+
+  /**
+   * @return double - value in [0, 1) from the high bits.
+   */
+  private static double unit(long bits) {
+    return (bits >>> 11) * 0x1.0p-53;
+  }
+
+  /**
+   * Write the decimal digits of a non-negative number.
+   *
+   * @return int - position after the digits.
+   */
+  private static int putLong(byte[] buf, int pos, long value) {
+    if (value == 0) {
+      buf[pos] = '0';
+      return pos + 1;
+    }
+    int digits = 0;
+    for (long v = value; v > 0; v /= 10) digits++;
+    int end = pos + digits;
+    for (int i = end - 1; i >= pos; i--) {
+      buf[i] = (byte) ('0' + value % 10);
+      value /= 10;
+    }
+    return end;
+  }
+
+  /**
+   *
+   * Command line entry point.
+   *
+   */
+  public static void main(String[] args) {
+    Options options = new Options();
+    Option outfile = new Option("o", "output", true, "Output CSV file");
+    outfile.setRequired(true);
+    options.addOption(outfile);
+    options.addOption(new Option("r", "rows", true, "Number of data rows (default: " + DEFAULT_ROWS + ")"));
+    options.addOption(new Option("c", "columns", true, "Number of columns (default: " + DEFAULT_COLUMNS + ")"));
+    options.addOption(new Option("q", "quoted", true, "Fraction of quoted cells with an embedded comma (default: 0)"));
+    options.addOption(new Option("k", "cardinality", true,
+                                 "Distinct values per column, one value or a comma separated list, 0 for unique (default: 0)"));
+    options.addOption(new Option("l", "label", true, "Column holding a unique label in every row"));
+    options.addOption(new Option("s", "seed", true, "Random seed (default: " + DEFAULT_SEED + ")"));
+    HelpFormatter formatter = new HelpFormatter();
+
+    CsvGenerator generator = new CsvGenerator();
+    String output = null;
+    CommandLineParser parser = new DefaultParser();
+    try {
+      CommandLine line = parser.parse(options, args);
+      output = line.getOptionValue("o");
+      if (line.hasOption("r")) generator.setRows(Long.parseLong(line.getOptionValue("r")));
+      if (line.hasOption("c")) generator.setColumns(Integer.parseInt(line.getOptionValue("c")));
+      if (line.hasOption("q")) generator.setQuotedFraction(Double.parseDouble(line.getOptionValue("q")));
+      if (line.hasOption("k")) {
+        String[] values = line.getOptionValue("k").split(",");
+        if (values.length == 1) {
+          generator.setCardinality(Long.parseLong(values[0]));
+        } else if (values.length == generator.columns) {
+          for (int c = 0; c < values.length; c++) {
+            generator.setCardinality(c, Long.parseLong(values[c].trim()));
+          }
+        } else {
+          throw new IllegalArgumentException("cardinality needs one value or one per column");
+        }
+      }
+      if (line.hasOption("l")) generator.setLabelColumn(Integer.parseInt(line.getOptionValue("l")));
+      if (line.hasOption("s")) generator.setSeed(Long.parseLong(line.getOptionValue("s")));
+    } catch (NumberFormatException e) {
+      System.err.println("Non-Number Found! " + e.getMessage());
+      formatter.printHelp("csvgenerator", options);
+      System.exit(2);
+    } catch (IllegalArgumentException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(2);
+    } catch (ParseException e) {
+      System.err.println(e.getMessage());
+      formatter.printHelp("csvgenerator", options);
+      System.exit(2);
+    }
+
+    long startTime = System.nanoTime();
+    try {
+      long bytes = generator.generate(output);
+      long ms = (System.nanoTime() - startTime) / 1000000;
+      System.out.println(String.format("Wrote %d rows (%d bytes) to %s in %d ms",
+                                       generator.rows, bytes, output, ms));
+    } catch (IOException e) {
+      System.err.println("Error: Failed to write to " + output);
+      System.exit(1);
+    }
+  }
+}
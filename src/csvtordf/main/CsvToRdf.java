@@ -28,22 +28,41 @@ import java.lang.reflect.Array;
 import java.lang.Exception;
 import java.util.Set;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Queue;
 import java.util.function.Consumer;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
 
 // Java GUI
 import javafx.application.Application;
 
 // Jena imports
 import org.apache.jena.base.Sys;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
 import org.apache.jena.rdf.model.*;
 import org.apache.jena.shared.*;
 import org.apache.jena.datatypes.RDFDatatype;
 import org.apache.jena.datatypes.xsd.*;
 import org.apache.jena.vocabulary.RDF;
 import org.apache.jena.vocabulary.RDFS;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFOps;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb.TDBFactory;
+import org.apache.jena.util.iterator.ExtendedIterator;
 
 // CLI parsing
 import org.apache.commons.cli.*;
@@ -55,127 +74,6 @@ import org.apache.commons.cli.*;
 //      or the model will need to be cleared and the new file
 //      will be its own model.
 
-class PropertyMetadata {
-  public final boolean isLiteral;
-  public final RDFDatatype literalType;
-  public final String objectType;
-  public boolean isSkipped;
-  public boolean useAsLabel;
-  public PropertyMetadata (boolean isLiteral, RDFDatatype literalType, String objectType) {
-    this.isLiteral = isLiteral;
-    this.literalType = literalType;
-    this.objectType = objectType;
-    this.isSkipped = false;
-    this.useAsLabel = false;
-  }
-}
-
-/**
- *
- * Execution class for parallel processing of CSV file
- *
- */
-class MultiThreadCsvProcessor implements Callable<Void> {
-  private final String[] lines;
-  private final String prefix;
-  private final String label;
-  private final int startNum, endNum;
-  private Model model;
-  private final ArrayList<Property> properties;
-  private final ArrayList<PropertyMetadata> propData;
-  private final String rdfType;
-
-  public MultiThreadCsvProcessor(Model model, String prefix, String label, ArrayList<Property> properties, ArrayList<PropertyMetadata> propData, String rdfType,
-		                 String[] lines, int startNum, int endNum) {
-    this.model = model;
-    this.prefix = prefix;
-    this.label = label;
-    this.properties = properties;
-    this.propData = propData;
-    this.rdfType = rdfType;
-    this.lines = lines;
-    this.startNum = startNum;
-    this.endNum = endNum;
-  }
-
-  public Void call() throws Exception {
-    int arrayLength = lines.length;
-    // Do as much parsing outside the critical section as possible
-    String[][] tokens = new String[arrayLength][];
-    String[] labels = new String[arrayLength];
-    int labelIdx = -1;
-    // See if any property is set to be used as URI label
-    for (int i = 0; i < propData.size(); i++) {
-        if (propData.get(i).useAsLabel) {
-            labelIdx = i;
-            break;
-        }
-    }
-    for (int i = startNum; i <= endNum; i++) {
-      tokens[i % arrayLength] = lines[i % arrayLength].split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)", -1);
-      if (tokens[i % arrayLength].length < properties.size()) {
-        throw new Exception("Line " + (i+1) + " too short, should contain " + properties.size() + " fields");
-      } else if (tokens[i % arrayLength].length > properties.size()) {
-        throw new Exception("Line " + (i+1) + " too long, should contain " + properties.size() + " fields");
-      }
-
-      if (labelIdx >= 0) {
-          labels[i % arrayLength] = prefix + tokens[i % arrayLength][labelIdx];
-      } else {
-          labels[i % arrayLength] = prefix + this.label + i;
-      }
-    }
-
-    // Locks are expensive, but tested with having each thread maintain its own model and merge at the end,
-    // and performance was the same or worse. Batching/locking had the best results.
-    model.enterCriticalSection(Lock.WRITE);
-    try {
-      Resource rdfClass;
-      if (!rdfType.equals("")) {
-        rdfClass = model.createResource(rdfType);
-        rdfClass.addProperty(RDF.type, RDFS.Class);
-      } else {
-        // if unused, Jena won't write it out
-        rdfClass = model.createResource();
-      }
-      for (int i = startNum; i <= endNum; i++) {
-        //The row is the subject
-        Resource instance = model.createResource(labels[i % arrayLength]);
-        if (!rdfType.equals("")) {
-          instance.addProperty(RDF.type, rdfClass);
-        }
-        for (int j = 0; j < tokens[i % arrayLength].length; j++) {
-          //jth property is the predicate
-          //cell is the object
-          Property property = properties.get(j);
-          PropertyMetadata meta = propData.get(j);
-          if (!meta.isSkipped) {
-            if (meta.isLiteral) {
-              Literal l = model.createTypedLiteral(tokens[i % arrayLength][j], meta.literalType);
-              instance.addProperty(property, l);
-            } else {
-              // tokens[i%arrayLength][j] is an object. create new object for it.
-              // if it already exists, Jena will return the existing one
-              // TBD: Handle using resources of different prefix??
-              Resource objInstance = model.createResource(prefix + tokens[i % arrayLength][j]);
-              if (!meta.objectType.equals("")) {
-                  // Set type of this new resource
-                  Resource objClass = model.createResource(meta.objectType);
-                  objClass.addProperty(RDF.type, RDFS.Class);
-                  objInstance.addProperty(RDF.type, objClass);
-              }
-              instance.addProperty(property, objInstance);
-            }
-          }
-        }
-      }
-    } finally {
-      model.leaveCriticalSection();
-    }
-    return null;
-  }
-}
-
 /**
  *
  * Class for handling conversion from CSV file to Jena RDF Model
@@ -185,11 +83,16 @@ public class CsvToRdf extends Object {
 
   // debug
   public static int g_verbosity = 0;
+  // Status and statistics, moved to stderr by main() when the RDF goes to stdout
+  public static PrintStream g_log = System.out;
   private long lastExecTime;
+  private ConversionStats lastStats;
   private String lastErrorMsg;
 
   // Jena model definitions
   private Model model;
+  private Dataset dataset; // set when the model is backed by TDB
+  private String tdbDirectory = null;
   private ArrayList<Property> properties = new ArrayList<>();
   private ArrayList<PropertyMetadata> propData = new ArrayList<>();
   private Set<Property> skipProps = new HashSet<Property>();
@@ -204,12 +107,53 @@ public class CsvToRdf extends Object {
   private boolean initialized = false;
 
   // How many lines to process at a time per-thread
-  // TBD: Make it configurable?
-  private final int BATCH_SIZE = 100;
+  public static final int DEFAULT_BATCH_SIZE = 100;
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  // Tune the batch size while converting
+  private boolean adaptiveBatching = false;
+  private int lastBatchSize;
+
+  // How many batches may wait for a worker before the reader blocks
+  public static final int DEFAULT_QUEUE_CAPACITY = 64;
+  private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+
+  // Upper bound on characters read when sampling rows for datatype inference
+  private static final long MAX_SAMPLE_CHARS = 4 * 1024 * 1024;
+
+  // Object nodes interned per column, 0 disables the cache
+  public static final int DEFAULT_NODE_CACHE_SIZE = 4096;
+  private int nodeCacheSize = DEFAULT_NODE_CACHE_SIZE;
+  private long lastCacheHits;
+  private long lastCacheMisses;
+
+  // Memory-map the input and let every worker read its own byte range
+  private boolean mappedInput = false;
+
+  // Subject-hash shards of the in-memory graph, 1 for a single default model
+  private int shards = 1;
+
+  // Insert from one writer thread fed by a ring buffer instead of locking
+  private boolean singleWriter = false;
+
+  // Store the in-memory model in a CompactGraph instead of the default graph
+  private boolean compactGraph = false;
+
+  // How conversions run their workers, and the executor kept between them if reusable
+  private ExecutorStrategy executorStrategy = ExecutorStrategy.FIXED;
+  private ExecutorService reusedExecutor = null;
+  private int reusedThreads = 0;
+
+  // Notified periodically while converting, or null
+  public static final long DEFAULT_PROGRESS_INTERVAL = 500; // ms
+  private ProgressListener progressListener = null;
+  private long progressInterval = DEFAULT_PROGRESS_INTERVAL;
+
+  // First failure of the running conversion, set by cancel() to stop it
+  private volatile AtomicReference<Exception> activeFailure = null;
 
   private static final String xsd[] = {"float", "double", "int", "long", "short", "byte", "unsignedByte", "unsignedShort",
           "unsignedInt", "unsignedLong", "decimal", "integer", "nonPositiveInteger",
-          "nonNegativeInteger", "positiveInteger", "negativeInteger", "Boolean", "string",
+          "nonNegativeInteger", "positiveInteger", "negativeInteger", "boolean", "string",
           "normalizedString", "anyURI", "token", "Name", "QName", "language", "NMTOKEN", "ENTITIES",
           "NMTOKENS", "ENTITY", "ID", "NCName", "IDREF", "IDREFS", "NOTATION", "hexBinary",
           "base64Binary", "date", "time", "dateTime", "duration", "gDay", "gMonth", "gYear",
@@ -232,26 +176,78 @@ public class CsvToRdf extends Object {
     Option infile = new Option("c", "csv", true, "CSV file to convert to RDF");
     infile.setRequired(true);
     options.addOption(infile);
-    options.addOption(new Option("o", "output", true, "Output RDF XML file (default: STDOUT)"));
+    options.addOption(new Option("o", "output", true, "Output RDF file (default: STDOUT)"));
     options.addOption(new Option("t", "threads", true, "Number of threads (default: 1)"));
     options.addOption(new Option("v", "verbosity", true, "Verbose logging level"));
+    options.addOption(new Option("b", "batch", true, "Lines per batch, or \"auto\" to tune at runtime (default: " + DEFAULT_BATCH_SIZE + ")"));
+    options.addOption(new Option("q", "queue", true, "Batches queued for workers before reading blocks (default: " + DEFAULT_QUEUE_CAPACITY + ")"));
+    options.addOption(new Option("m", "mmap", false, "Memory-map the CSV file and read byte ranges in parallel"));
+    options.addOption(new Option("d", "tdb", true, "Convert into a TDB store directory instead of memory"));
+    options.addOption(new Option("n", "node-cache", true, "Object nodes cached per column, 0 to disable (default: " + DEFAULT_NODE_CACHE_SIZE + ")"));
+    options.addOption(new Option("i", "infer", true, "Infer column datatypes from the first given number of rows"));
+    options.addOption(new Option("s", "stream", false, "Stream N-Triples (N-Quads if output ends in .nq) without building the model"));
+    options.addOption(new Option("p", "progress", false, "Show a progress bar on stderr while converting"));
+    options.addOption(new Option("g", "shards", true, "Split the in-memory graph into shards with their own locks (default: 1)"));
+    options.addOption(new Option("w", "writer", false, "Insert from a single writer thread fed by a lock-free ring buffer"));
+    options.addOption(new Option("k", "compact", false, "Keep the model in a compact graph using a fraction of the heap"));
+    options.addOption(new Option("x", "executor", true, "Worker threads: " + ExecutorStrategy.names() + " (default: fixed)"));
+    options.addOption(new Option("f", "format", true, "Output format: " + RdfOutput.formatNames()
+                                 + " (default: from the output extension, else rdfxml)"));
+    options.addOption(new Option("z", "gzip", false, "Compress the output with gzip (default if output ends in .gz)"));
     HelpFormatter formatter = new HelpFormatter();
 
     // Parse arguments
     String csvfile = "";
     int threads = 1;
     String output = "STDOUT"; // technically disallows a user creating a file named "STDOUT"
+    boolean stream = false;
+    int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    int batchSize = DEFAULT_BATCH_SIZE;
+    boolean adaptive = false;
+    boolean mmap = false;
+    String tdbDir = null;
+    int nodeCacheSize = DEFAULT_NODE_CACHE_SIZE;
+    int inferRows = 0;
+    boolean progress = false;
+    RDFFormat format = null;
+    boolean gzip = false;
+    int shards = 1;
+    boolean singleWriter = false;
+    boolean compact = false;
+    ExecutorStrategy executor = ExecutorStrategy.FIXED;
     CommandLineParser parser = new DefaultParser();
     try {
       CommandLine line = parser.parse(options, args);
       if(line.hasOption("v")) g_verbosity = Integer.parseInt(line.getOptionValue("v"));
       if(line.hasOption("o")) output = line.getOptionValue("o");
       if(line.hasOption("t")) threads = Integer.parseInt(line.getOptionValue("t"));
+      if(line.hasOption("b")) {
+        if (line.getOptionValue("b").equals("auto")) adaptive = true;
+        else batchSize = Integer.parseInt(line.getOptionValue("b"));
+      }
+      if(line.hasOption("q")) queueCapacity = Integer.parseInt(line.getOptionValue("q"));
+      stream = line.hasOption("s");
+      mmap = line.hasOption("m");
+      progress = line.hasOption("p");
+      if(line.hasOption("d")) tdbDir = line.getOptionValue("d");
+      if(line.hasOption("i")) inferRows = Integer.parseInt(line.getOptionValue("i"));
+      if(line.hasOption("n")) nodeCacheSize = Integer.parseInt(line.getOptionValue("n"));
+      singleWriter = line.hasOption("w");
+      compact = line.hasOption("k");
+      if(line.hasOption("x")) executor = ExecutorStrategy.forName(line.getOptionValue("x"));
+      if(line.hasOption("g")) shards = Integer.parseInt(line.getOptionValue("g"));
+      if(line.hasOption("f")) format = RdfOutput.format(line.getOptionValue("f"));
+      gzip = line.hasOption("z") || RdfOutput.isGzip(output);
+      // With a TDB store, only write RDF out if asked to
+      if(tdbDir != null && !line.hasOption("o")) output = null;
       csvfile = line.getOptionValue("c");
     } catch(NumberFormatException e) {
       System.err.println("Non-Integer Found! " + e.getMessage());
       formatter.printHelp("csvtordf", options);
       System.exit(2);
+    } catch(IllegalArgumentException e) {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(2);
     } catch(ParseException e) {
       // oops
       System.err.println(e.getMessage());
@@ -263,40 +259,154 @@ public class CsvToRdf extends Object {
         System.err.println("Error: threads must be a positive integer");
         System.exit(2);
     }
+    if (batchSize <= 0) {
+        System.err.println("Error: batch must be a positive integer or auto");
+        System.exit(2);
+    }
+    if (queueCapacity <= 0) {
+        System.err.println("Error: queue must be a positive integer");
+        System.exit(2);
+    }
+    if (nodeCacheSize < 0) {
+        System.err.println("Error: node-cache must not be negative");
+        System.exit(2);
+    }
+    if (shards <= 0) {
+        System.err.println("Error: shards must be a positive integer");
+        System.exit(2);
+    }
+    if (stream && tdbDir != null) {
+        System.err.println("Error: stream and tdb cannot be combined");
+        System.exit(2);
+    }
+    if (!executor.isSupported()) {
+        System.err.println("Error: executor " + executor.getName() + " is not supported by this JDK");
+        System.exit(2);
+    }
+    if (format == null && output != null) {
+      format = RdfOutput.formatForPath(output);
+      // Streaming falls back to N-Triples for extensions it cannot stream
+      if (stream && !RdfOutput.streamable(format.getLang())) format = RDFFormat.NTRIPLES;
+    }
+    if (stream && !RdfOutput.streamable(format.getLang())) {
+        System.err.println("Error: " + format.getLang().getName() + " cannot be streamed");
+        System.exit(2);
+    }
+
+    // Keep stdout for the RDF alone, status lines would corrupt gzip and binary output
+    if ("STDOUT".equals(output)) g_log = System.err;
 
     // Print application header info
-    System.out.println("CSV-To-RDF");
-    System.out.println("  Verbosity   : " + g_verbosity);
-    System.out.println("  Threads     : " + threads);
-    System.out.println("  CSV File    : " + csvfile);
-    System.out.println("  Output File : " + output);
+    g_log.println("CSV-To-RDF");
+    g_log.println("  Verbosity   : " + g_verbosity);
+    g_log.println("  Threads     : " + threads + " (" + executor.getName() + ")");
+    g_log.println("  CSV File    : " + csvfile);
+    g_log.println("  Output File : " + (output != null ? output : "none"));
+    if (output != null) g_log.println("  Format      : " + format.getLang().getName() + (gzip ? " (gzip)" : ""));
+    g_log.println("  Streaming   : " + stream);
+    if (tdbDir != null) g_log.println("  TDB Store   : " + tdbDir);
 
     CsvToRdf csvHandler = new CsvToRdf();
+    csvHandler.setQueueCapacity(queueCapacity);
+    csvHandler.setBatchSize(batchSize);
+    csvHandler.setAdaptiveBatching(adaptive);
+    csvHandler.setMappedInput(mmap);
+    csvHandler.setTdbDirectory(tdbDir);
+    csvHandler.setNodeCacheSize(nodeCacheSize);
+    csvHandler.setShards(shards);
+    csvHandler.setSingleWriter(singleWriter);
+    csvHandler.setCompactGraph(compact);
+    csvHandler.setExecutorStrategy(executor);
+    if (progress) {
+      // stderr, so it never mixes with RDF written to stdout
+      csvHandler.setProgressListener(p -> {
+        System.err.print("\r" + progressLine(p));
+        if (p.done) System.err.println();
+      });
+    }
 
     // Initialize model with headers
     try {
-      FileInputStream fIn = new FileInputStream(csvfile);
+      InputStream fIn = CompressedInput.open(csvfile, null);
       BufferedReader br = new BufferedReader(new InputStreamReader(fIn));
       String line = br.readLine(); // reads the first line, or nothing
-      String[] tokens = line.split(",");
+      br.close();
+      String[] tokens = CsvTokenizer.get().split(line);
       csvHandler.initModel(tokens);
     } catch(Exception e) {
       System.err.println(e.getMessage());
       System.exit(1);
     }
 
+    if (inferRows > 0) {
+      g_log.println("Inferring datatypes from " + inferRows + " rows...");
+      if (!csvHandler.inferDatatypes(csvfile, inferRows)) {
+        System.exit(1);
+      }
+    }
+
+    if (stream) {
+      // Triples go straight to the output, the model is never loaded
+      Lang lang = format.getLang();
+      g_log.println("Streaming " + lang.getName() + " to " + output + "...");
+      try {
+        OutputStream out = RdfOutput.wrap(output.equals("STDOUT") ? System.out : new FileOutputStream(output), gzip);
+        boolean success = csvHandler.convertToStream(csvfile, threads, out, lang);
+        if (output.equals("STDOUT")) {
+          if (out instanceof GZIPOutputStream) ((GZIPOutputStream) out).finish();
+          out.flush();
+        } else {
+          out.close();
+        }
+        if (!success) System.exit(1);
+      } catch (IOException e) {
+        System.err.println("Error: Failed to write to " + output);
+        System.exit(1);
+      }
+      g_log.println("");
+      g_log.println("Statistics:");
+      g_log.println(csvHandler.getLastStats());
+      g_log.println("");
+      g_log.println("Done!");
+      return;
+    }
+
     // Will load Jena Model
-    System.out.println("Reading in CSV file...");
+    g_log.println("Reading in CSV file...");
     if (!csvHandler.readInputFile(csvfile, threads)) {
       System.exit(1);
     }
 
     // Will output RDF file (or stdout)
-    System.out.println("Writing RDF XML to " + output + "...");
-    csvHandler.outputModel(output);
+    if (output != null) {
+      g_log.println("Writing " + format.getLang().getName() + " to " + output + "...");
+      csvHandler.outputModel(output, format, gzip, threads);
+    }
 
-    System.out.println("");
-    System.out.println("Done!");
+    g_log.println("");
+    g_log.println("Statistics:");
+    g_log.println(csvHandler.getLastStats());
+    g_log.println("");
+    g_log.println("Done!");
+  }
+
+  /**
+   * Format a progress bar line for the console.
+   *
+   * @param p Progress of the conversion.
+   *
+   * @return String - bar, percentage, rows, throughput and ETA.
+   */
+  private static String progressLine(ProgressListener.Progress p) {
+    final int width = 30;
+    int filled = (int) (p.getFraction() * width);
+    StringBuilder bar = new StringBuilder("[");
+    for (int i = 0; i < width; i++) {
+      bar.append(i < filled ? '=' : (i == filled ? '>' : ' '));
+    }
+    bar.append(']');
+    String eta = p.etaMillis < 0 ? "--:--" : String.format("%02d:%02d", p.etaMillis / 60000, (p.etaMillis / 1000) % 60);
+    return String.format("%s %5.1f%% %,d rows %,.0f rows/s ETA %s ", bar, p.getFraction() * 100, p.rows, p.rowsPerSecond, eta);
   }
 
   public void setDatatypes(Property property, boolean isLiteral, String uri) {
@@ -317,14 +427,76 @@ public class CsvToRdf extends Object {
         }
         propData.set(idx, new PropertyMetadata(true, type, null));
       } else {
-        if (!uri.startsWith("http")) {
+        if (!uri.equals("") && !uri.startsWith("http")) {
             uri = prefix + uri;
         }
+        // A column inferred to hold IRIs keeps linking to them when its class is set
+        boolean keepIris = propData.get(idx).keepIris;
         propData.set(idx, new PropertyMetadata(false, null, uri));
+        propData.get(idx).keepIris = keepIris;
       }
     }
   }
 
+  /**
+   * Infer the datatype of every column from a sample of rows at the start
+   * of a CSV file. Picks the narrowest of boolean, int, long, decimal,
+   * double, date, dateTime and anyURI that fits every sampled cell, or
+   * string otherwise. Empty cells are ignored. Columns holding only http(s)
+   * IRIs become resources linking to those IRIs as they are.
+   * Skipped and label columns keep their markings.
+   * <p>
+   * At most sampleRows rows and MAX_SAMPLE_CHARS characters are read, so
+   * the cost does not depend on the size of the file.
+   *
+   * @param inputFilePath Path to CSV input file relative to working directory
+   * @param sampleRows Maximum number of data rows to sample
+   *
+   * @return boolean - true if successful, false otherwise.
+   */
+  public boolean inferDatatypes(String inputFilePath, int sampleRows) {
+    try (BufferedReader br = new BufferedReader(new InputStreamReader(CompressedInput.open(inputFilePath, null)))) {
+      for (int i = 0; i < numSkipLines; ++i) {
+        br.readLine(); // discard line
+      }
+      String line = br.readLine();
+      if (line == null) {
+        throw new Exception("File is empty: " + inputFilePath);
+      }
+      if (!initialized) {
+        initModel(CsvTokenizer.get().split(line));
+      }
+
+      // Sample rows, ignoring any with the wrong number of fields
+      CsvTokenizer tokenizer = CsvTokenizer.get();
+      ArrayList<String[]> rows = new ArrayList<>();
+      long chars = 0;
+      while (rows.size() < sampleRows && chars < MAX_SAMPLE_CHARS && (line = br.readLine()) != null) {
+        chars += line.length();
+        if (tokenizer.tokenize(line) == properties.size()) {
+          rows.add(tokenizer.split(line));
+        }
+      }
+
+      PropertyMetadata[] inferred = DatatypeInference.infer(rows, properties.size());
+      for (int i = 0; i < inferred.length; i++) {
+        inferred[i].isSkipped = propData.get(i).isSkipped;
+        inferred[i].useAsLabel = propData.get(i).useAsLabel;
+        propData.set(i, inferred[i]);
+        if (g_verbosity >= 1) g_log.println("  Inferred " + properties.get(i).getLocalName() + " -> " + getDatatype(properties.get(i)));
+      }
+    } catch (FileNotFoundException e) {
+      lastErrorMsg = "File not found: " + inputFilePath;
+      System.err.println(lastErrorMsg);
+      return false;
+    } catch (Exception e) {
+      lastErrorMsg = e.getMessage();
+      System.err.println(lastErrorMsg);
+      return false;
+    }
+    return true;
+  }
+
   /**
    * Read in a CSV input file, breaking it down into strings
    *
@@ -334,9 +506,101 @@ public class CsvToRdf extends Object {
    * @return boolean - true if successful, false otherwise.
    */
   public boolean readInputFile(String inputFilePath, int threads) {
+    if (!convert(inputFilePath, threads, null)) {
+      return false;
+    }
+    if (g_verbosity >= 3) printModel();
+    return true;
+  }
+
+  /**
+   * Convert a CSV input file straight to an RDF stream without building
+   * the Jena Model. Memory use stays flat regardless of the number of rows.
+   *
+   * @param inputFilePath Path to CSV input file relative to working directory
+   * @param threads Number of threads for multithreaded parsing
+   * @param stream Destination for generated triples
+   *
+   * @return boolean - true if successful, false otherwise.
+   */
+  public boolean convertToStream(String inputFilePath, int threads, StreamRDF stream) {
+    return convert(inputFilePath, threads, new StreamSink(stream, prefix));
+  }
+
+  /**
+   * Convert a CSV input file into a custom sink without building the
+   * Jena Model. The sink is called from the worker threads.
+   *
+   * @param inputFilePath Path to CSV input file relative to working directory
+   * @param threads Number of threads for multithreaded parsing
+   * @param sink Destination for generated triples
+   *
+   * @return boolean - true if successful, false otherwise.
+   */
+  public boolean convertToSink(String inputFilePath, int threads, TripleSink sink) {
+    return convert(inputFilePath, threads, sink);
+  }
+
+  /**
+   * Convert a CSV input file straight to a streamable RDF output without
+   * building the Jena Model.
+   *
+   * @param inputFilePath Path to CSV input file relative to working directory
+   * @param threads Number of threads for multithreaded parsing
+   * @param out Output stream to write to
+   * @param lang Streamable RDF language, e.g. Lang.NTRIPLES, Lang.RDFTHRIFT or Lang.RDFXML
+   *
+   * @return boolean - true if successful, false otherwise.
+   */
+  public boolean convertToStream(String inputFilePath, int threads, OutputStream out, Lang lang) {
+    if (!RdfOutput.streamable(lang)) {
+      lastErrorMsg = "No streaming writer for " + lang.getName();
+      System.err.println(lastErrorMsg);
+      return false;
+    }
+    return convertToStream(inputFilePath, threads, RdfOutput.streamWriter(out, lang));
+  }
+
+  /**
+   * Cancel a running conversion from another thread. Workers stop after
+   * their current batch and the conversion returns false with a
+   * "Conversion cancelled" error. Rows converted so far stay in the
+   * model until clearModel() is called. Does nothing if no conversion
+   * is running.
+   */
+  public void cancel() {
+    AtomicReference<Exception> failure = activeFailure;
+    if (failure != null) {
+      failure.compareAndSet(null, new CancellationException("Conversion cancelled"));
+    }
+  }
+
+  /**
+   * Run the conversion, sending triples to the Model or to another sink.
+   *
+   * @param inputFilePath Path to CSV input file relative to working directory
+   * @param threads Number of threads for multithreaded parsing
+   * @param target Sink to send triples to, or null to load the Model
+   *
+   * @return boolean - true if successful, false otherwise.
+   */
+  private boolean convert(String inputFilePath, int threads, TripleSink target) {
+    // Start timer, including reading the header
+    long startTime = System.nanoTime();
+    ConversionStats stats = new ConversionStats();
+    // Published first and cleared last, so a cancel while reading the header or finishing is not lost
+    AtomicReference<Exception> failure = new AtomicReference<>();
+    activeFailure = failure;
     try {
+      // Compressed files are decompressed as a stream, they cannot be mapped
+      boolean mapped = mappedInput;
+      if (mapped && CompressedInput.detect(inputFilePath) != null) {
+        g_log.println("  Compressed input, reading sequentially instead of memory-mapped");
+        mapped = false;
+      }
       //Construct buffered reader from supplied command line argument of file path
-      FileInputStream fIn = new FileInputStream(inputFilePath);
+      // The mapped reader counts its own bytes
+      InputStream fIn = CompressedInput.open(inputFilePath, mapped ? null : stats);
       BufferedReader br = new BufferedReader(new InputStreamReader(fIn));
 
       // Skip lines as specified by user
@@ -349,49 +613,92 @@ public class CsvToRdf extends Object {
       String line = br.readLine(); // reads the first line, or nothing
       if (!initialized) {
         //Split header line into properties
-        String[] tokens = line.split(",");
+        String[] tokens = CsvTokenizer.get().split(line);
         // initialize model with properties
         initModel(tokens);
       }
 
-      // Start timer
-      long startTime = System.nanoTime();
-
-      // Create thread pool
-      ExecutorService service = Executors.newFixedThreadPool(threads);
-
-      // Pass off batch of lines to thread in pool
-      int num = 0;
-      String[] linesArray = new String[BATCH_SIZE];
-      ArrayList<Future> jobResults = new ArrayList<>();
-      while ((line = br.readLine()) != null) {
-        linesArray[num % BATCH_SIZE] = line;
-        num++;
-        if (num % BATCH_SIZE == 0) {
-          jobResults.add(service.submit(
-              new MultiThreadCsvProcessor(model, prefix, uriLabel, properties, propData, rdfType,
-                                          Arrays.copyOf(linesArray, BATCH_SIZE), num - BATCH_SIZE, num - 1)));
-        }
+      TripleSink sink;
+      if (target != null) {
+        sink = target;
+      } else if (dataset != null) {
+        sink = new TdbSink(dataset);
+      } else if (singleWriter) {
+        // Workers never lock, the writer thread is the only one adding
+        sink = new RingBufferSink(model.getGraph(), stats);
+      } else if (model.getGraph() instanceof ShardedGraph) {
+        // Striped shard locks instead of the model lock
+        sink = new ShardedSink((ShardedGraph) model.getGraph());
+      } else {
+        sink = new ModelSink(model);
       }
-      // Launch any remaining
-      if (num % BATCH_SIZE != 0) {
-        jobResults.add(service.submit(
-            new MultiThreadCsvProcessor(model, prefix, uriLabel, properties, propData, rdfType,
-                                        linesArray, (num / BATCH_SIZE) * BATCH_SIZE, num - 1)));
+      sink.start();
+
+      // Interned object nodes, scoped to this conversion
+      NodeCache cache = (nodeCacheSize > 0) ? new NodeCache(properties.size(), nodeCacheSize) : null;
+      // Mapped ranges are read by the workers themselves, so they never wait for a batch
+      // and the idle time that shrinks adaptive batches is not available
+      boolean adaptive = adaptiveBatching;
+      if (adaptive && mapped) {
+        g_log.println("  Warning: adaptive batch size is not supported with memory-mapped input, using " + batchSize);
+        adaptive = false;
       }
-      // Wait for completion
-      service.shutdown();
-      service.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-      br.close();
-      // Check if any failed
-      for (Future jobResult : jobResults) {
-        jobResult.get(); // will throw exception if job threw exception
+      BatchSizer sizer = new BatchSizer(batchSize, adaptive, sink);
+
+      ProgressReporter reporter = null;
+      if (progressListener != null) {
+        reporter = new ProgressReporter(stats, new File(inputFilePath).length(), progressListener, progressInterval);
+        reporter.start();
       }
- 
-      // stop timer and log
+
+      ExecutorService service = acquireExecutor(threads);
+      try {
+        Triple[] classes = classTriples();
+        stats.addTriples(classes.length);
+        sink.accept(classes);
+        if (mapped) {
+          // Workers read their own byte ranges, no shared reader
+          br.close();
+          MultiThreadCsvProcessor processor = new MultiThreadCsvProcessor(sink, prefix, uriLabel, properties, propData, rdfType,
+                                                                          cache, sizer, stats, null, null, failure);
+          new MappedCsvReader(inputFilePath, numSkipLines + 1).process(service, threads, processor, sizer, stats);
+        } else {
+          readQueued(br, service, threads, sink, cache, sizer, stats, failure);
+        }
+      } catch (Exception e) {
+        // Release anything the sink holds on to, such as the TDB loader thread
+        try { sink.finish(); } catch (Exception ignored) {}
+        throw e;
+      } finally {
+        releaseExecutor(service);
+        br.close();
+        if (reporter != null) reporter.stop();
+      }
+      // Remaining inserts, e.g. flushing a stream or the TDB loader, count as insert time
+      long finishStart = System.nanoTime();
+      long cpuFinishStart = ConversionStats.cpuTime();
+      sink.finish();
       long endTime = System.nanoTime();
-      lastExecTime = (endTime - startTime) / 1000000; // milliseconds
-      System.out.println("  Processed CSV file in " + lastExecTime + " ms");
+      stats.addStage(ConversionStats.Stage.INSERT, endTime - finishStart, ConversionStats.cpuTime() - cpuFinishStart);
+      stats.setLockWaitNanos(sink.getLockWaitNanos());
+      // Cancelled after the workers were done
+      if (failure.get() != null) throw failure.get();
+
+      // stop timer and log
+      stats.setTotalNanos(endTime - startTime);
+      if (reporter != null) reporter.complete();
+      lastStats = stats;
+      lastExecTime = stats.getTotalMillis();
+      g_log.println("  Processed CSV file in " + lastExecTime + " ms");
+      lastBatchSize = sizer.getSize();
+      if (adaptive) {
+        g_log.println("  Final batch size: " + lastBatchSize);
+      }
+      if (cache != null) {
+        lastCacheHits = cache.getHits();
+        lastCacheMisses = cache.getMisses();
+        g_log.println("  Node cache: " + lastCacheHits + " hits, " + lastCacheMisses + " misses");
+      }
 
     } catch (FileNotFoundException e) {
       lastErrorMsg = "File not found: " + inputFilePath;
@@ -410,23 +717,116 @@ public class CsvToRdf extends Object {
       lastErrorMsg = e.getMessage();
       System.err.println(lastErrorMsg);
       return false;
+    } finally {
+      activeFailure = null;
     }
 
-    if (g_verbosity >= 3) printModel();
     return true;
   }
 
+  /**
+   * Read the remaining lines on this thread and pass them to the workers.
+   * The reader blocks while the queue is full, so memory use depends on
+   * the queue capacity rather than on the size of the file.
+   *
+   * @param br Reader positioned at the first data row
+   * @param service Executor to run the workers on
+   * @param threads Number of workers
+   * @param sink Destination for generated triples
+   * @param cache Object node cache, or null
+   * @param sizer Decides the number of lines per batch
+   * @param stats Metrics of this conversion
+   * @param failure First failure of any worker, or a cancellation
+   */
+  private void readQueued(BufferedReader br, ExecutorService service, int threads, TripleSink sink, NodeCache cache,
+                          BatchSizer sizer, ConversionStats stats, AtomicReference<Exception> failure) throws Exception {
+    BlockingQueue<LineBatch> queue = new ArrayBlockingQueue<>(queueCapacity);
+    // Batches come back once processed, at most queue capacity plus one per thread and the reader exist
+    Queue<LineBatch> pool = new ConcurrentLinkedQueue<>();
+    ArrayList<Future<Void>> workers = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      workers.add(service.submit(
+          new MultiThreadCsvProcessor(sink, prefix, uriLabel, properties, propData, rdfType, cache, sizer, stats, queue, pool, failure)));
+    }
+
+    // Read time excludes waiting on a full queue, which is time the workers take
+    long readStart = System.nanoTime();
+    long cpuStart = ConversionStats.cpuTime();
+    long blocked = 0;
+    long num = 0;
+    LineBatchReader reader = new LineBatchReader(br);
+    try {
+      while (failure.get() == null) {
+        LineBatch batch = LineBatch.take(pool, num);
+        if (!reader.fill(batch, sizer.next())) break;
+        long putStart = System.nanoTime();
+        queue.put(batch);
+        blocked += System.nanoTime() - putStart;
+        stats.recordQueueDepth(queue.size());
+        num += batch.size;
+      }
+    } catch (Throwable e) {
+      // Workers drain the queue once failed, so the end markers below always fit
+      failure.compareAndSet(null, e instanceof Exception ? (Exception) e : new Exception("Reader failed: " + e, e));
+    }
+    stats.addStage(ConversionStats.Stage.READ, System.nanoTime() - readStart - blocked, ConversionStats.cpuTime() - cpuStart);
+    // Workers must always end, a reused executor is not shut down after the conversion
+    for (int i = 0; i < threads; i++) {
+      queue.put(LineBatch.END);
+    }
+    // Wait for completion
+    for (Future<Void> worker : workers) {
+      worker.get();
+    }
+    // Check if any failed
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+  }
+
+  /**
+   * Build the rdfs:Class declarations for the row type and any
+   * resource types. These only need to be emitted once per conversion.
+   *
+   * @return Triple[] - class declaration triples.
+   */
+  private Triple[] classTriples() {
+    Set<String> classes = new LinkedHashSet<>();
+    if (!rdfType.equals("")) {
+      classes.add(rdfType);
+    }
+    for (PropertyMetadata meta : propData) {
+      if (!meta.isSkipped && !meta.isLiteral && !meta.objectType.equals("")) {
+        classes.add(meta.objectType);
+      }
+    }
+    Triple[] triples = new Triple[classes.size()];
+    int i = 0;
+    for (String cls : classes) {
+      triples[i++] = new Triple(NodeFactory.createURI(cls), RDF.type.asNode(), RDFS.Class.asNode());
+    }
+    return triples;
+  }
+
   /**
    * Create a model and create properties from CSV headers
    *
-   * @param headers String array of headers in first line of CSV file, split on commas.
+   * @param headers String array of headers in first line of CSV file, split by CsvTokenizer.
    *
    */
   public void initModel(String[] headers) {
     //create an empty model
-    if (g_verbosity >= 1) System.out.println("  Initializing model with " + headers.length + " properties: " + Arrays.toString(headers));
-    model = ModelFactory.createDefaultModel();
-    model.setNsPrefix("csv", prefix); // use "csv" prefix for any line resource
+    if (g_verbosity >= 1) g_log.println("  Initializing model with " + headers.length + " properties: " + Arrays.toString(headers));
+    if (tdbDirectory != null) {
+      // Disk-backed store, every access must be inside a transaction
+      dataset = TDBFactory.createDataset(tdbDirectory);
+      model = dataset.getDefaultModel();
+      Txn.executeWrite(dataset, () -> model.setNsPrefix("csv", prefix));
+    } else {
+      dataset = null;
+      model = createMemoryModel();
+      model.setNsPrefix("csv", prefix); // use "csv" prefix for any line resource
+    }
 
     //Iterate through headers, creating them as properties to model
     for (String header : headers) {
@@ -466,6 +866,22 @@ public class CsvToRdf extends Object {
     }
   }
 
+  /**
+   *
+   * Use absolute http(s) IRIs in a resource column as they are, instead
+   * of appending them to the prefix. Columns inferred to hold IRIs are
+   * marked already.
+   *
+   * @param property Resource property whose cells may be IRIs
+   *
+   */
+  public void markKeepIris(Property property) {
+    int idx = properties.indexOf(property);
+    if (idx >= 0) {
+        propData.get(idx).keepIris = true;
+    }
+  }
+
   /**
    *
    * Clean string for XML/RDF syntax
@@ -486,12 +902,55 @@ public class CsvToRdf extends Object {
     return fmtStr;
   }
 
+  /**
+   * Copy the statements of the first subjects of the model into a small
+   * model, for previewing. Only the triples needed are visited, so the
+   * cost does not depend on the size of the model.
+   *
+   * @param maxSubjects Maximum number of subjects to include.
+   *
+   * @return Model - in-memory preview with the prefixes of the model.
+   */
+  public Model previewModel(int maxSubjects) {
+    if (dataset != null && !dataset.isInTransaction()) {
+      return Txn.calculateRead(dataset, () -> previewModel(maxSubjects));
+    }
+    Model preview = ModelFactory.createDefaultModel();
+    preview.setNsPrefixes(model.getNsPrefixMap());
+    Graph graph = model.getGraph();
+    // Model.listSubjects() collects every subject first, scan the triples lazily instead
+    Set<Node> subjects = new LinkedHashSet<>();
+    ExtendedIterator<Triple> it = graph.find(Node.ANY, Node.ANY, Node.ANY);
+    try {
+      while (subjects.size() < maxSubjects && it.hasNext()) {
+        subjects.add(it.next().getSubject());
+      }
+    } finally {
+      it.close();
+    }
+    for (Node subject : subjects) {
+      ExtendedIterator<Triple> stmts = graph.find(subject, Node.ANY, Node.ANY);
+      try {
+        while (stmts.hasNext()) {
+          preview.getGraph().add(stmts.next());
+        }
+      } finally {
+        stmts.close();
+      }
+    }
+    return preview;
+  }
+
   /**
    *
    * Print model for debugging purposes
    *
    */
   public void printModel() {
+    if (dataset != null && !dataset.isInTransaction()) {
+      Txn.executeRead(dataset, this::printModel);
+      return;
+    }
     // list the statements in the Model
     StmtIterator iter = model.listStatements();
 
@@ -502,16 +961,16 @@ public class CsvToRdf extends Object {
       Property predicate = stmt.getPredicate();   // get the predicate
       RDFNode object    = stmt.getObject();      // get the object
 
-      System.out.print(subject.toString());
-      System.out.print(" " + predicate.toString() + " ");
+      g_log.print(subject.toString());
+      g_log.print(" " + predicate.toString() + " ");
       if (object instanceof Resource) {
-        System.out.print(object.toString());
+        g_log.print(object.toString());
       } else {
         // object is a literal
-        System.out.print(" \"" + object.toString() + "\"");
+        g_log.print(" \"" + object.toString() + "\"");
       }
 
-      System.out.println(" .");
+      g_log.println(" .");
     }
   }
 
@@ -523,18 +982,72 @@ public class CsvToRdf extends Object {
    *
    */
   public void outputModel(String outFilePath) {
+    outputModel(outFilePath, RDFFormat.RDFXML_ABBREV, false);
+  }
+
+  /**
+   *
+   * Output Jena Model to a file or stdout in the given format.
+   * The model is written as a stream, so line-based and binary
+   * formats do not build the whole output in memory first.
+   *
+   * @param outFilePath path to output file or STDOUT
+   * @param format RDF format, e.g. RDFFormat.RDF_THRIFT
+   * @param gzip compress the output with gzip
+   *
+   */
+  public void outputModel(String outFilePath, RDFFormat format, boolean gzip) {
+    outputModel(outFilePath, format, gzip, 1);
+  }
+
+  /**
+   *
+   * Output Jena Model to a file or stdout in the given format, using
+   * several threads where the format allows it. N-Triples and N-Quads
+   * files of an in-memory model are written in parallel parts that are
+   * then joined, other formats and stdout are written by one thread.
+   *
+   * @param outFilePath path to output file or STDOUT
+   * @param format RDF format, e.g. RDFFormat.NTRIPLES
+   * @param gzip compress the output with gzip
+   * @param threads number of writer threads
+   *
+   */
+  public void outputModel(String outFilePath, RDFFormat format, boolean gzip, int threads) {
+    if (dataset != null && !dataset.isInTransaction()) {
+      Txn.executeRead(dataset, () -> outputModel(outFilePath, format, gzip, threads));
+      return;
+    }
+    long start = System.nanoTime();
+    long cpuStart = ConversionStats.cpuTime();
+    // TDB transactions belong to one thread, so a store is always written by one
+    boolean parallel = threads > 1 && dataset == null && !outFilePath.equals("STDOUT")
+        && (format.getLang().equals(Lang.NTRIPLES) || format.getLang().equals(Lang.NQUADS));
     try {
-      if (outFilePath.equals("STDOUT")) {
-        System.out.println("");
-        model.write(System.out, "RDF/XML-ABBREV");
-        System.out.println("");
+      if (parallel) {
+        // Triples of the default graph are written the same in N-Quads
+        ExecutorService service = acquireExecutor(threads);
+        try {
+          new ParallelNTriplesWriter(model.getGraph(), threads, service).write(outFilePath, gzip);
+        } finally {
+          releaseExecutor(service);
+        }
+      } else if (outFilePath.equals("STDOUT")) {
+        boolean text = !gzip && !RdfOutput.isBinary(format);
+        if (text) System.out.println("");
+        OutputStream out = RdfOutput.wrap(System.out, gzip);
+        writeModel(out, format);
+        // Finish the gzip trailer without closing stdout
+        if (out instanceof GZIPOutputStream) ((GZIPOutputStream) out).finish();
+        out.flush();
+        if (text) System.out.println("");
       } else {
-        File ofile = new File(outFilePath);
-        FileOutputStream fostream = new FileOutputStream(ofile);
-        if (!ofile.exists()) ofile.createNewFile();
-        model.write(fostream, "RDF/XML-ABBREV");
-        fostream.flush();
-        fostream.close();
+        try (OutputStream out = RdfOutput.wrap(new FileOutputStream(outFilePath), gzip)) {
+          writeModel(out, format);
+        }
+      }
+      if (lastStats != null) {
+        lastStats.addStage(ConversionStats.Stage.WRITE, System.nanoTime() - start, ConversionStats.cpuTime() - cpuStart);
       }
     } catch (IOException e) {
       System.err.println("Error: Failed to write to " + outFilePath);
@@ -543,6 +1056,18 @@ public class CsvToRdf extends Object {
     }
   }
 
+  private void writeModel(OutputStream out, RDFFormat format) {
+    if (format.equals(RDFFormat.RDFXML_PLAIN)) {
+      // One pass over the graph, grouped by subject
+      StreamRDFOps.graphToStream(model.getGraph(), new RdfXmlStreamWriter(out));
+    } else if (RDFLanguages.isQuads(format.getLang())) {
+      // The model becomes the default graph
+      RDFDataMgr.write(out, DatasetFactory.wrap(model), format);
+    } else {
+      RDFDataMgr.write(out, model, format);
+    }
+  }
+
   /**
    *
    * Clear Jena Model and properties to prepare for
@@ -550,13 +1075,29 @@ public class CsvToRdf extends Object {
    *
    */
   public void clearModel() {
-    model = ModelFactory.createDefaultModel();
+    // A TDB store keeps its contents, it is only released here
+    dataset = null;
+    model = createMemoryModel();
     properties = new ArrayList<>();
     propData = new ArrayList<>();
     initialized = false;
   }
 
 
+  /**
+   * @return Model - empty in-memory model, sharded if more than one shard is set,
+   * compact if set.
+   */
+  private Model createMemoryModel() {
+    if (shards > 1) {
+      return ModelFactory.createModelForGraph(compactGraph ? new ShardedGraph(shards, CompactGraph::new)
+                                                           : new ShardedGraph(shards));
+    }
+    if (compactGraph) return ModelFactory.createModelForGraph(new CompactGraph());
+    return ModelFactory.createDefaultModel();
+  }
+
+
   /* BASIC GETTERS AND SETTERS BELOW THIS LINE */
 
   /**
@@ -603,6 +1144,212 @@ public class CsvToRdf extends Object {
     numSkipLines = n;
   }
 
+  /**
+   * Set the number of lines handed to a worker thread at a time.
+   * Larger batches lower the per-batch locking and hand-off cost,
+   * smaller batches spread the load more evenly across threads.
+   * When adaptive batching is on, this is the starting size.
+   *
+   * @param n Lines per batch, must be positive.
+   */
+  public void setBatchSize(int n) {
+    if (n <= 0) {
+      throw new IllegalArgumentException("Batch size must be a positive integer");
+    }
+    batchSize = n;
+  }
+
+  /**
+   * Set whether the batch size is tuned while converting from measured
+   * throughput, model lock wait time and worker idle time. Memory-mapped
+   * input has no idle time to measure and keeps the fixed size.
+   *
+   * @param a true to tune the batch size at runtime.
+   */
+  public void setAdaptiveBatching(boolean a) {
+    adaptiveBatching = a;
+  }
+
+  /**
+   * Set the number of line batches that may be queued for the
+   * worker threads before reading blocks.
+   *
+   * @param n Queue capacity in batches, must be positive.
+   */
+  public void setQueueCapacity(int n) {
+    if (n <= 0) {
+      throw new IllegalArgumentException("Queue capacity must be a positive integer");
+    }
+    queueCapacity = n;
+  }
+
+  /**
+   * Set whether the input file is memory-mapped and split into byte
+   * ranges that are read in parallel, instead of being read by a
+   * single thread. Quoted fields may then contain newlines.
+   *
+   * @param m true to read with memory-mapped ranges.
+   */
+  public void setMappedInput(boolean m) {
+    mappedInput = m;
+  }
+
+  /**
+   * Set a TDB store directory to convert into instead of an in-memory
+   * Model, for datasets larger than the heap. Triples are loaded by a
+   * single writer in large transactions and persist after the
+   * conversion, so the store can be queried without loading it again.
+   * A store that already holds data is added to.
+   * <p>
+   * The Model returned by getModel() is then TDB-backed and must only
+   * be accessed inside a transaction on getDataset().
+   *
+   * @param dir TDB directory, or null to convert in memory.
+   */
+  public void setTdbDirectory(String dir) {
+    tdbDirectory = dir;
+  }
+
+  /**
+   * Set the number of shards of the in-memory graph. Triples are split
+   * across the shards by subject, and each shard has its own lock, so
+   * workers inserting different rows rarely wait on each other. The
+   * Model returned by getModel() is a view over all shards. Takes
+   * effect when the next model is created, and is ignored for TDB.
+   *
+   * @param n Number of shards, 1 for a single default model.
+   */
+  public void setShards(int n) {
+    if (n <= 0) {
+      throw new IllegalArgumentException("Shards must be a positive integer");
+    }
+    shards = n;
+  }
+
+  /**
+   * Set whether triples are added to the in-memory model by a single
+   * writer thread. Workers then hand their batches to a lock-free ring
+   * buffer instead of taking the model lock, and the statistics report
+   * how full the buffer was, showing whether the workers or the writer
+   * limit the conversion. Ignored for TDB, which always has one writer.
+   *
+   * @param w true to insert from a single writer thread.
+   */
+  public void setSingleWriter(boolean w) {
+    singleWriter = w;
+  }
+
+  /**
+   * Set whether the in-memory model stores its triples in a compact,
+   * append-optimized graph instead of the default graph. Nodes are kept
+   * once in a dictionary and triples as int ids, using a fraction of the
+   * heap, and indexes are only built when the model is read. Takes
+   * effect when the next model is created, and combines with shards.
+   *
+   * @param c true to use the compact graph.
+   */
+  public void setCompactGraph(boolean c) {
+    compactGraph = c;
+  }
+
+  /**
+   * Set how conversions run their worker threads. Reusable strategies keep
+   * their executor between conversions of this instance, so later
+   * conversions start on warm threads; call shutdownExecutor() when done.
+   * Changing the strategy shuts down the executor kept so far.
+   *
+   * @param strategy Executor strategy, FIXED by default.
+   */
+  public synchronized void setExecutorStrategy(ExecutorStrategy strategy) {
+    if (strategy == null) {
+      throw new IllegalArgumentException("Executor strategy must not be null");
+    }
+    if (!strategy.isSupported()) {
+      throw new IllegalArgumentException("Executor " + strategy.getName() + " is not supported by this JDK");
+    }
+    if (strategy != executorStrategy) shutdownExecutor();
+    executorStrategy = strategy;
+  }
+
+  /**
+   * @return ExecutorStrategy - how conversions run their worker threads.
+   */
+  public ExecutorStrategy getExecutorStrategy() {
+    return executorStrategy;
+  }
+
+  /**
+   * Shut down the executor kept between conversions, if any. A later
+   * conversion creates a new one.
+   */
+  public synchronized void shutdownExecutor() {
+    if (reusedExecutor != null) {
+      reusedExecutor.shutdown();
+      reusedExecutor = null;
+      reusedThreads = 0;
+    }
+  }
+
+  /**
+   * Get an executor running at least the given number of tasks at once,
+   * reusing the kept one if it is large enough.
+   *
+   * @return ExecutorService - executor to hand back to releaseExecutor().
+   */
+  private synchronized ExecutorService acquireExecutor(int threads) {
+    if (!executorStrategy.isReusable()) return executorStrategy.create(threads);
+    if (reusedExecutor == null || reusedThreads < threads) {
+      shutdownExecutor();
+      reusedExecutor = executorStrategy.create(threads);
+      reusedThreads = threads;
+    }
+    return reusedExecutor;
+  }
+
+  /**
+   * Shut down an executor after use unless it is kept between conversions.
+   * Every task submitted to it must have ended.
+   */
+  private synchronized void releaseExecutor(ExecutorService service) {
+    if (service != reusedExecutor) service.shutdownNow();
+  }
+
+  /**
+   * Set how many distinct object nodes are interned per column during a
+   * conversion. Repeated cell values then reuse one node instead of
+   * allocating a new IRI or literal each time.
+   *
+   * @param n Nodes cached per column, 0 to disable caching.
+   */
+  public void setNodeCacheSize(int n) {
+    if (n < 0) {
+      throw new IllegalArgumentException("Node cache size must not be negative");
+    }
+    nodeCacheSize = n;
+  }
+
+  /**
+   * Set a listener notified with the progress of every following
+   * conversion. It is called from a timer thread.
+   *
+   * @param listener Listener to notify, or null for none.
+   */
+  public void setProgressListener(ProgressListener listener) {
+    this.progressListener = listener;
+  }
+
+  /**
+   * Set how often the progress listener is notified.
+   *
+   * @param millis Interval in milliseconds.
+   */
+  public void setProgressInterval(long millis) {
+    if (millis <= 0) {
+      throw new IllegalArgumentException("Progress interval must be a positive integer");
+    }
+    this.progressInterval = millis;
+  }
+
   /**
    * Get currently set rdf:type
    *
@@ -624,6 +1371,40 @@ public class CsvToRdf extends Object {
    */
   public Model getModel() { return model; }
 
+  /**
+   * Get the TDB Dataset holding the Model.
+   *
+   * @return Dataset - TDB dataset, or null if the Model is in memory.
+   */
+  public Dataset getDataset() { return dataset; }
+
+  /**
+   * Check whether a property is converted to literals or to resources.
+   *
+   * @param property Property parsed from CSV.
+   *
+   * @return boolean - true for literals, false for resources.
+   */
+  public boolean isLiteral(Property property) {
+    return propData.get(properties.indexOf(property)).isLiteral;
+  }
+
+  /**
+   * Get the datatype currently set for a property.
+   *
+   * @param property Property parsed from CSV.
+   *
+   * @return String - XSD type name for literals, RDF type of resources
+   *                  ("" if untyped).
+   */
+  public String getDatatype(Property property) {
+    PropertyMetadata meta = propData.get(properties.indexOf(property));
+    if (meta.isLiteral) {
+      return meta.literalType.getURI().substring(XSDDatatype.XSD.length() + 1);
+    }
+    return meta.objectType;
+  }
+
   /**
    * Get Properties defined in Jena Model that were parsed from CSV.
    *
@@ -638,6 +1419,35 @@ public class CsvToRdf extends Object {
    */
   public long getLastExecTime() { return lastExecTime; }
 
+  /**
+   * Get the metrics of the last conversion. Writing the model
+   * afterwards adds to its write stage.
+   *
+   * @return ConversionStats - metrics, or null if nothing was converted.
+   */
+  public ConversionStats getLastStats() { return lastStats; }
+
+  /**
+   * Get the batch size in use at the end of the last conversion.
+   *
+   * @return int - lines per batch.
+   */
+  public int getLastBatchSize() { return lastBatchSize; }
+
+  /**
+   * Get the number of object nodes reused from the cache in the last conversion.
+   *
+   * @return long - cache hits.
+   */
+  public long getLastCacheHits() { return lastCacheHits; }
+
+  /**
+   * Get the number of object nodes created in the last conversion.
+   *
+   * @return long - cache misses.
+   */
+  public long getLastCacheMisses() { return lastCacheMisses; }
+
   /**
    * Get the last error message from a failed conversion.
    *
@@ -0,0 +1,178 @@
+/**
+ * <h1>CsvTokenizer.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Single-pass RFC 4180 tokenizer for CSV lines. Each line is
+ * scanned once, character by character, so the cost is linear
+ * in the width of the line. Surrounding quotes are stripped
+ * and escaped quotes ("") are collapsed to a single quote.
+ * <p>
+ * Fields are kept as ranges of one reused char buffer, so tokenizing
+ * creates no objects, and a field only becomes a String when asked.
+ * A tokenizer keeps its field buffers between lines and is not
+ * thread safe. Worker threads should use {@link #get()} to
+ * obtain their own instance.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.Arrays;
+
+/**
+ * Reusable tokenizer splitting one CSV line into fields.
+ */
+public class CsvTokenizer {
+
+  private static final char DELIM = ',';
+  private static final char QUOTE = '"';
+
+  private static final ThreadLocal<CsvTokenizer> LOCAL = new ThreadLocal<CsvTokenizer>() {
+    @Override protected CsvTokenizer initialValue() { return new CsvTokenizer(); }
+  };
+
+  // Reused between lines: unquoted text of every field, and where each field ends
+  private char[] line = new char[256];
+  private char[] buf = new char[256];
+  private int[] ends = new int[16];
+  private int length = 0;
+  private int count = 0;
+
+  /**
+   * Get the tokenizer owned by the calling thread.
+   *
+   * @return CsvTokenizer - tokenizer for this thread.
+   */
+  public static CsvTokenizer get() {
+    return LOCAL.get();
+  }
+
+  /**
+   * Tokenize a line into the reusable field buffer.
+   *
+   * @param line Line of CSV text, without the line terminator.
+   *
+   * @return int - number of fields found.
+   */
+  public int tokenize(CharSequence line) {
+    int len = line.length();
+    if (this.line.length < len) this.line = new char[Math.max(len, this.line.length * 2)];
+    for (int i = 0; i < len; i++) {
+      this.line[i] = line.charAt(i);
+    }
+    return tokenize(this.line, 0, len);
+  }
+
+  /**
+   * Tokenize part of a char array into the reusable field buffer, without
+   * creating any objects. Fields are read with {@link #buffer()},
+   * {@link #start(int)} and {@link #length(int)}, or as Strings with
+   * {@link #field(int)}.
+   *
+   * @param chars Text containing the line.
+   * @param from Offset of the first char of the line.
+   * @param to Offset after the last char of the line, excluding the terminator.
+   *
+   * @return int - number of fields found.
+   */
+  public int tokenize(char[] chars, int from, int to) {
+    count = 0;
+    length = 0;
+    // Unquoting only ever removes chars
+    if (buf.length < to - from) buf = new char[Math.max(to - from, buf.length * 2)];
+    boolean inQuotes = false;
+    boolean fieldStart = true;
+    for (int i = from; i < to; i++) {
+      char c = chars[i];
+      if (inQuotes) {
+        if (c == QUOTE) {
+          if (i + 1 < to && chars[i + 1] == QUOTE) {
+            buf[length++] = QUOTE; // escaped quote
+            i++;
+          } else {
+            inQuotes = false;
+          }
+        } else {
+          buf[length++] = c;
+        }
+      } else if (c == DELIM) {
+        endField();
+        fieldStart = true;
+        continue;
+      } else if (c == QUOTE && fieldStart) {
+        inQuotes = true;
+      } else {
+        buf[length++] = c;
+      }
+      fieldStart = false;
+    }
+    endField();
+    return count;
+  }
+
+  /**
+   * Tokenize a line and return a copy of its fields.
+   *
+   * @param line Line of CSV text, without the line terminator.
+   *
+   * @return String[] - fields of the line.
+   */
+  public String[] split(CharSequence line) {
+    tokenize(line);
+    String[] fields = new String[count];
+    for (int i = 0; i < count; i++) {
+      fields[i] = field(i);
+    }
+    return fields;
+  }
+
+  /**
+   * Get a field from the last tokenized line.
+   *
+   * @param i Index of field.
+   *
+   * @return String - value of the field.
+   */
+  public String field(int i) {
+    return new String(buf, start(i), length(i));
+  }
+
+  /**
+   * @return char[] - buffer holding the text of every field of the last line.
+   */
+  public char[] buffer() {
+    return buf;
+  }
+
+  /**
+   * @return int - offset of field i in buffer().
+   */
+  public int start(int i) {
+    return i == 0 ? 0 : ends[i - 1];
+  }
+
+  /**
+   * @return int - number of chars of field i.
+   */
+  public int length(int i) {
+    return ends[i] - start(i);
+  }
+
+  /**
+   * Get the number of fields in the last tokenized line.
+   *
+   * @return int - number of fields.
+   */
+  public int count() {
+    return count;
+  }
+
+  private void endField() {
+    if (count == ends.length) {
+      ends = Arrays.copyOf(ends, count * 2);
+    }
+    ends[count++] = length;
+  }
+}
@@ -58,16 +58,20 @@ import javafx.event.*;
 
 // Jena Imports
 import org.apache.jena.ontology.OntModel;
+import org.apache.jena.graph.Node;
 import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.ReadWrite;
 import org.apache.jena.rdf.model.*;
+import org.apache.jena.system.Txn;
 import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.vocabulary.RDF;
 
 // Protege Imports
 import org.semanticweb.owlapi.rdf.turtle.parser.TurtleParser;
 import org.semanticweb.owlapi.model.*;
 import org.semanticweb.owlapi.model.parameters.ChangeApplied;
 import org.semanticweb.owlapi.rdf.rdfxml.parser.OWLRDFConsumer;
-import org.semanticweb.owlapi.vocab.OWL2Datatype;
 import org.protege.editor.owl.model.*;
 import org.protege.editor.owl.ui.action.ProtegeOWLAction;
 
@@ -79,12 +83,20 @@ public class CsvWizard extends Application {
     private static final String LEFT_PANE_TITLE = "Options";
     private static final String xsd[] = {"float", "double", "int", "long", "short", "byte", "unsignedByte", "unsignedShort",
             "unsignedInt", "unsignedLong", "decimal", "integer", "nonPositiveInteger",
-            "nonNegativeInteger", "positiveInteger", "negativeInteger", "Boolean", "string",
+            "nonNegativeInteger", "positiveInteger", "negativeInteger", "boolean", "string",
             "normalizedString", "anyURI", "token", "Name", "QName", "language", "NMTOKEN", "ENTITIES",
             "NMTOKENS", "ENTITY", "ID", "NCName", "IDREF", "IDREFS", "NOTATION", "hexBinary",
             "base64Binary", "date", "time", "dateTime", "duration", "gDay", "gMonth", "gYear",
             "gYearMonth", "gMonthDay:"};
     private static final int DEFAULT_NUMBER_OF_THREADS = 1;
+    // Rows sampled to suggest a datatype for each column
+    private static final int INFER_SAMPLE_ROWS = 1000;
+    // Subjects shown in the RDF preview
+    private static final int PREVIEW_SUBJECTS = 100;
+    // Statements per chunk of axioms added to the ontology at once
+    private static final int IMPORT_CHUNK_SIZE = 10000;
+    // Chunks per thread built ahead of the one being added
+    private static final int IMPORT_CHUNKS_IN_FLIGHT = 2;
     //The maximum amount of threads they should be able to run
     int processors = Runtime.getRuntime().availableProcessors();
     private int linesToSkip;
@@ -102,6 +114,7 @@ public class CsvWizard extends Application {
     private String selectedFileName;
     private CsvToRdf csvHandler = new CsvToRdf();
     private TextField skipLinesField = new TextField("0");
+    private CheckBox directImportBox = new CheckBox("Import directly into ontology (no preview)");
     private Image iconImage = new Image(CsvWizard.class.getResourceAsStream("icon.png"));
 
     /**
@@ -121,6 +134,8 @@ public class CsvWizard extends Application {
                 Platform.setImplicitExit(false);
             }
         }
+        // Files are often imported again while the wizard is open, keep the worker threads between imports
+        csvHandler.setExecutorStrategy(ExecutorStrategy.SHARED);
 
 
         // Setup scene
@@ -199,25 +214,14 @@ public class CsvWizard extends Application {
                     viewModel();
                     return;
                 } else if (!setupFailed) {
-                    // load rest of model
-                    modelLoaded = csvHandler.readInputFile(selectedFilePath, numberOfThreads);
+                    // load rest of model in the background, displays it when done
+                    submit.setDisable(true);
+                    convertInBackground(() -> submit.setDisable(false));
                 } else {
                     // error already displayed, clear screen and exit
                     modelLoaded = false;
                     viewModel();
-                    return;
-                }
-
-                if (!modelLoaded) {
-                    // reading rest of model failed
-                    Alert errorAlert = new Alert(AlertType.ERROR);
-                    errorAlert.setHeaderText("CSV conversion error");
-                    errorAlert.setContentText(csvHandler.getLastErrorMsg());
-                    errorAlert.showAndWait();
                 }
-
-                // Will either display model or clear window
-                viewModel();
             }
         });
         submit.setVisible(false);
@@ -229,12 +233,13 @@ public class CsvWizard extends Application {
             @Override
             public void handle(ActionEvent e) {
                 FileChooser fileChooser = new FileChooser();
-                FileChooser.ExtensionFilter extFilter = new FileChooser.ExtensionFilter("CSV files (*.csv)", "*.csv");
+                FileChooser.ExtensionFilter extFilter = new FileChooser.ExtensionFilter("CSV files (*.csv, *.csv.gz, *.csv.bz2, ...)",
+                        "*.csv", "*.csv.gz", "*.csv.bz2", "*.csv.xz", "*.csv.zst", "*.gz", "*.bz2");
                 fileChooser.getExtensionFilters().add(extFilter);
 
                 File selectedFile = fileChooser.showOpenDialog(null);
                 if (selectedFile != null) {
-                    selectedFileName = selectedFile.getName().replaceFirst("[.][^.]+$", "");
+                    selectedFileName = selectedFile.getName().replaceFirst("(?i)[.](gz|bz2|xz|zst|lz4|z)$", "").replaceFirst("[.][^.]+$", "");
                     selectedFilePath = selectedFile.getPath();
                     System.out.println(selectedFilePath);
                     currentFile.setText(selectedFilePath);
@@ -301,6 +306,11 @@ public class CsvWizard extends Application {
         skipLinesField.setText("0");
         leftPane.getChildren().add(new HBox(skipLines, skipLinesField));
 
+        // Skips the Jena model and adds axioms to the open ontology while converting
+        directImportBox.setVisible(runAsPlugin);
+        directImportBox.setManaged(runAsPlugin);
+        leftPane.getChildren().add(directImportBox);
+
         execTimeLabel = new Label("Execution Time: N/A");
         execTimeLabel.setVisible(false);
         leftPane.getChildren().add(execTimeLabel);
@@ -317,10 +327,14 @@ public class CsvWizard extends Application {
                 } else {
                     FileChooser fileChooser = new FileChooser();
                     fileChooser.setTitle("Save " + selectedFileName);
-                    //Specify we are saving RDF files here
+                    //Specify we are saving RDF files here, the format follows the extension
                     List<String> supportedExts = Arrays.asList("*.rdf", "*.xml", "*.owl");
                     FileChooser.ExtensionFilter extFilter = new FileChooser.ExtensionFilter("RDF files (*.rdf, *.xml, *.owl)", supportedExts);
                     fileChooser.getExtensionFilters().add(extFilter);
+                    fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("N-Triples (*.nt)", "*.nt"));
+                    fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Turtle (*.ttl)", "*.ttl"));
+                    fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("RDF Thrift (*.trdf)", "*.trdf"));
+                    fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Gzip compressed (*.gz)", "*.gz"));
                     //Default name for file is the input file's name
                     fileChooser.setInitialFileName(selectedFileName + ".xml");
 
@@ -328,7 +342,8 @@ public class CsvWizard extends Application {
                     File file = fileChooser.showSaveDialog(null);
 
                     if (file != null) {
-                        csvHandler.outputModel(file.getAbsolutePath());
+                        String path = file.getAbsolutePath();
+                        csvHandler.outputModel(path, RdfOutput.formatForPath(path), RdfOutput.isGzip(path));
                     }
                 }
             }
@@ -361,6 +376,130 @@ public class CsvWizard extends Application {
         return centerPane;
     }
 
+    /**
+     * Convert the rest of the CSV file on a background thread, so the GUI
+     * stays responsive, showing a progress window that allows cancelling.
+     *
+     * @param onDone Run on the JavaFX thread once the conversion has ended.
+     */
+    private void convertInBackground(Runnable onDone) {
+        final boolean[] cancelRequested = {false};
+        final boolean direct = runAsPlugin && directImportBox.isSelected();
+        final OwlAxiomSink[] directSink = {null};
+        Task<Boolean> convertTask = new Task<Boolean>() {
+            @Override
+            protected Boolean call() throws Exception {
+                // Counters are sampled on a timer, the bar follows rows processed out of the
+                // total estimated from the share of bytes read, indeterminate until known
+                csvHandler.setProgressListener(p -> {
+                    long total = p.getEstimatedRows();
+                    updateProgress(p.rows, total);
+                    String eta = p.etaMillis < 0 ? "" : "\tETA: " + (p.etaMillis / 1000) + " s";
+                    String percent = total > 0 ? String.format(" (%d%%)", (int) (100 * p.rows / total)) : "";
+                    updateMessage(String.format("Converting: %,d rows%s, %,.0f rows/s%s",
+                            p.rows, percent, p.rowsPerSecond, eta));
+                });
+                try {
+                    if (direct) {
+                        // Axioms go straight into the ontology, changes are made on the Swing thread
+                        OwlAxiomSink sink = new OwlAxiomSink(modelManager.getActiveOntology(), csvHandler, true);
+                        directSink[0] = sink;
+                        return csvHandler.convertToSink(selectedFilePath, numberOfThreads, sink);
+                    }
+                    return csvHandler.readInputFile(selectedFilePath, numberOfThreads);
+                } finally {
+                    csvHandler.setProgressListener(null);
+                }
+            }
+        };
+        Stage progStage = new Stage();
+        ProgressBar pBar = new ProgressBar();
+        pBar.setPrefSize(300, 24);
+        pBar.progressProperty().bind(convertTask.progressProperty());
+        Label progLabel = new Label("Converting: 0 rows");
+        progLabel.textProperty().bind(convertTask.messageProperty());
+        Button cancelButton = new Button("Cancel");
+        cancelButton.setOnMouseClicked(event -> {
+            progStage.setAlwaysOnTop(false);
+            Alert confirmCancel = new Alert(AlertType.CONFIRMATION,
+                    "Are you sure you want to cancel conversion?",
+                    ButtonType.YES, ButtonType.NO);
+            confirmCancel.setTitle("Cancel Conversion");
+            Optional<ButtonType> confirmRes = confirmCancel.showAndWait();
+            if (confirmRes.get() == ButtonType.YES && convertTask.isRunning()) {
+                // Workers stop after their current batch, the task then ends with false
+                cancelRequested[0] = true;
+                cancelButton.setDisable(true);
+                csvHandler.cancel();
+            } else {
+                progStage.setAlwaysOnTop(true);
+            }
+        });
+        VBox layout = new VBox(10);
+        layout.getChildren().setAll(progLabel, pBar, cancelButton);
+        layout.setPadding(new Insets(10));
+        layout.setAlignment(Pos.CENTER);
+        layout.getStylesheets().add(
+                getClass().getResource(
+                        "CsvWizard.css"
+                ).toExternalForm()
+        );
+        progStage.setTitle("Converting CSV Data");
+        progStage.getIcons().add(iconImage);
+        progStage.setScene(new Scene(layout));
+        progStage.setAlwaysOnTop(true);
+        progStage.setResizable(false);
+        // Closing the window cancels as well
+        progStage.setOnCloseRequest(event -> {
+            cancelRequested[0] = true;
+            csvHandler.cancel();
+        });
+        convertTask.setOnSucceeded(event -> {
+            progStage.close();
+            modelLoaded = convertTask.getValue();
+            if (modelLoaded && direct) {
+                // Nothing to preview or save, the data is already in the ontology
+                modelLoaded = false;
+                Alert notifySuccess = new Alert(AlertType.NONE,
+                        "Successfully imported data to ontology\n" + csvHandler.getLastStats().summary(), ButtonType.OK);
+                notifySuccess.showAndWait();
+            } else if (!modelLoaded && cancelRequested[0] && direct && directSink[0] != null
+                       && directSink[0].getAxiomsAdded() > 0) {
+                // Chunks applied before cancelling cannot be taken back here
+                Alert notifyPartial = new Alert(AlertType.WARNING,
+                        "Import cancelled. " + directSink[0].getAxiomsAdded()
+                        + " axioms imported before cancelling remain in the ontology.", ButtonType.OK);
+                notifyPartial.setHeaderText("Partial data was imported");
+                notifyPartial.showAndWait();
+            } else if (!modelLoaded && !cancelRequested[0]) {
+                // reading rest of model failed
+                Alert errorAlert = new Alert(AlertType.ERROR);
+                errorAlert.setHeaderText("CSV conversion error");
+                errorAlert.setContentText(csvHandler.getLastErrorMsg());
+                errorAlert.showAndWait();
+            }
+            // Will either display model or clear window, releasing a partial model
+            viewModel();
+            onDone.run();
+        });
+        convertTask.setOnFailed(event -> {
+            progStage.close();
+            modelLoaded = false;
+            Alert errorAlert = new Alert(AlertType.ERROR);
+            errorAlert.setHeaderText("CSV conversion error");
+            errorAlert.setContentText(convertTask.getException().getMessage());
+            errorAlert.showAndWait();
+            viewModel();
+            onDone.run();
+        });
+
+        progStage.show();
+
+        Thread worker = new Thread(convertTask, "csvtordf-convert");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
     /**
      * Save Jena model to OWL Ontology from Protege
      */
@@ -369,71 +508,65 @@ public class CsvWizard extends Application {
         OWLOntologyManager ontManager = actOntology.getOWLOntologyManager();
         OWLDataFactory owlFactory = ontManager.getOWLDataFactory();
         Model model = csvHandler.getModel();
-        StmtIterator stmtIt = model.listStatements();
         System.out.println("Importing CsvToRdf data to Protege...");
 
+        // A TDB backed model is only readable inside a transaction
+        final Dataset dataset = csvHandler.getDataset();
+
         // Want to show a nice progress bar since this can take a while,
         // Setup separate Task that will be run
-        final long numStmts = model.size();
+        final long numStmts = (dataset != null) ? Txn.calculateRead(dataset, model::size) : model.size();
+        final int threads = numberOfThreads;
         Task<Void> saveOntTask = new Task<Void>() {
             @Override
             protected Void call() throws Exception {
-                // load statements
-                long i = 0;
-                Set<OWLAxiom> newAxioms = new HashSet<OWLAxiom>();
-                while (stmtIt.hasNext()) {
-                    if (this.isCancelled()) {
-                        System.out.println("Cancelling import...");
-                        return null;
-                    }
-                    Statement stmt = stmtIt.next();
-                    // update progress bar and message
-                    i++;
-                    if (i < numStmts) {
-                        updateMessage("Preparing: " + (int) (100 * (double) i / numStmts) + "% complete");
-                    } else {
-                        updateMessage("Importing...");
+                // Statements are split into chunks whose axioms are built in parallel. Chunks are
+                // applied in order, one at a time, with a bounded number in flight so heap use stays
+                // capped and Protege can handle other events between chunks.
+                ExecutorService pool = Executors.newFixedThreadPool(threads);
+                ArrayDeque<Future<Set<OWLAxiom>>> pending = new ArrayDeque<>();
+                ArrayDeque<Integer> pendingSizes = new ArrayDeque<>();
+                Set<String> declaredProps = ConcurrentHashMap.newKeySet();
+                long applied = 0;
+                // Read transactions belong to a thread, this one reads every statement
+                if (dataset != null) dataset.begin(ReadWrite.READ);
+                StmtIterator stmtIt = null;
+                try {
+                    stmtIt = model.listStatements();
+                    while (stmtIt.hasNext() && !this.isCancelled()) {
+                        List<Statement> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+                        while (chunk.size() < IMPORT_CHUNK_SIZE && stmtIt.hasNext()) {
+                            chunk.add(stmtIt.next());
+                        }
+                        pending.add(pool.submit(() -> buildAxioms(chunk, owlFactory, declaredProps)));
+                        pendingSizes.add(chunk.size());
+                        if (pending.size() >= IMPORT_CHUNKS_IN_FLIGHT * threads) {
+                            applied += applyAxioms(ontManager, actOntology, pending.remove().get(), pendingSizes.remove());
+                            reportImport(applied);
+                        }
                     }
-                    updateProgress(i, numStmts);
-                    // This seems to reduce chance of deadlocking later...
-                    System.err.println("Adding statement (" + i + "/" + numStmts + "): <" + stmt.getSubject().toString() + ", " + stmt.getPredicate().toString() + ", " + stmt.getObject().toString() + ">");
-
-                    // Add subject if not in Ontology
-                    OWLNamedIndividual sub = owlFactory.getOWLNamedIndividual(IRI.create(stmt.getSubject().getURI()));
-                    newAxioms.add(owlFactory.getOWLDeclarationAxiom(sub));
-                    Property pred = stmt.getPredicate();
-                    RDFNode obj = stmt.getObject();
-                    // TBD: Make this hardcoded type check prettier...
-                    if (pred.toString().equals("http://www.w3.org/1999/02/22-rdf-syntax-ns#type")) {
-                        // Create class for object if none exists
-                        OWLClass newClass = owlFactory.getOWLClass(IRI.create(obj.toString()));
-                        // Add the triple assertion
-                        newAxioms.add(owlFactory.getOWLClassAssertionAxiom(newClass, sub));
-                    } else if (obj.isResource()) {
-                        // Add predicate as ObjectProperty
-                        OWLObjectProperty owlPred = owlFactory.getOWLObjectProperty(IRI.create(pred.getURI()));
-                        newAxioms.add(owlFactory.getOWLDeclarationAxiom(owlPred));
-                        // Add object if not in Ontology
-                        OWLNamedIndividual owlObj = owlFactory.getOWLNamedIndividual(IRI.create(obj.asResource().getURI()));
-                        newAxioms.add(owlFactory.getOWLDeclarationAxiom(owlObj));
-                        // Add object triple assertion
-                        newAxioms.add(owlFactory.getOWLObjectPropertyAssertionAxiom(owlPred, sub, owlObj));
-                    } else {
-                        // Add predicate as DataProperty
-                        OWLDataProperty owlPred = owlFactory.getOWLDataProperty(IRI.create(pred.getURI()));
-                        newAxioms.add(owlFactory.getOWLDeclarationAxiom(owlPred));
-                        // Add data triple assertion
-                        newAxioms.add(owlFactory.getOWLDataPropertyAssertionAxiom(owlPred, sub, owlFactory.getOWLLiteral(obj.toString(), OWL2Datatype.RDF_PLAIN_LITERAL)));
+                    while (!pending.isEmpty() && !this.isCancelled()) {
+                        applied += applyAxioms(ontManager, actOntology, pending.remove().get(), pendingSizes.remove());
+                        reportImport(applied);
                     }
+                } finally {
+                    if (stmtIt != null) stmtIt.close();
+                    pool.shutdownNow();
+                    if (dataset != null) dataset.end();
                 }
-                // Adding all at once is faster.
-                ChangeApplied status = ontManager.addAxioms(actOntology, newAxioms);
-                if (status == ChangeApplied.UNSUCCESSFULLY) {
-                    throw new Exception("Failed to add new axioms");
+                if (this.isCancelled()) {
+                    System.out.println("Cancelling import...");
+                    return null;
                 }
                 System.out.println("Successfully imported!");
                 return null;
             }
+
+            // Called once per chunk, which keeps progress updates throttled
+            private void reportImport(long applied) {
+                updateMessage("Importing: " + (int) (100 * (double) applied / numStmts) + "% complete");
+                updateProgress(applied, numStmts);
+            }
         };
         Stage progStage = new Stage();
         ProgressBar pBar = new ProgressBar();
@@ -445,7 +578,7 @@ public class CsvWizard extends Application {
         cancelButton.setOnMouseClicked(event -> {
             progStage.setAlwaysOnTop(false);
             Alert confirmCancel = new Alert(AlertType.CONFIRMATION,
-                    "Are you sure you want to cancel import?",
+                    "Are you sure you want to cancel import? Data imported so far is kept.",
                     ButtonType.YES, ButtonType.NO);
             confirmCancel.setTitle("Cancel Import");
             Optional<ButtonType> confirmRes = confirmCancel.showAndWait();
@@ -491,8 +624,82 @@ public class CsvWizard extends Application {
 
         progStage.show();
 
-        // Need to launch on Swing Thread, as Protege runs on Swing and not JavaFX
-        SwingUtilities.invokeLater(saveOntTask);
+        // Axioms are built here, only adding them to the ontology runs on the Swing thread
+        Thread worker = new Thread(saveOntTask, "csvtordf-import");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Build the OWL axioms for a chunk of statements. Called from several
+     * threads at once; each property is only declared by the first chunk
+     * that sees it.
+     *
+     * @param stmts Statements to convert.
+     * @param owlFactory Factory to create axioms with.
+     * @param declaredProps Properties already declared, shared between chunks.
+     *
+     * @return Set - axioms for the chunk.
+     */
+    private static Set<OWLAxiom> buildAxioms(List<Statement> stmts, OWLDataFactory owlFactory, Set<String> declaredProps) {
+        Set<OWLAxiom> newAxioms = new HashSet<OWLAxiom>();
+        for (Statement stmt : stmts) {
+            // Add subject if not in Ontology
+            OWLNamedIndividual sub = owlFactory.getOWLNamedIndividual(IRI.create(stmt.getSubject().getURI()));
+            newAxioms.add(owlFactory.getOWLDeclarationAxiom(sub));
+            Property pred = stmt.getPredicate();
+            RDFNode obj = stmt.getObject();
+            if (pred.equals(RDF.type)) {
+                // Create class for object if none exists
+                OWLClass newClass = owlFactory.getOWLClass(IRI.create(obj.toString()));
+                // Add the triple assertion
+                newAxioms.add(owlFactory.getOWLClassAssertionAxiom(newClass, sub));
+            } else if (obj.isResource()) {
+                // Add predicate as ObjectProperty
+                OWLObjectProperty owlPred = owlFactory.getOWLObjectProperty(IRI.create(pred.getURI()));
+                if (declaredProps.add("object " + pred.getURI())) {
+                    newAxioms.add(owlFactory.getOWLDeclarationAxiom(owlPred));
+                }
+                // Add object if not in Ontology
+                OWLNamedIndividual owlObj = owlFactory.getOWLNamedIndividual(IRI.create(obj.asResource().getURI()));
+                newAxioms.add(owlFactory.getOWLDeclarationAxiom(owlObj));
+                // Add object triple assertion
+                newAxioms.add(owlFactory.getOWLObjectPropertyAssertionAxiom(owlPred, sub, owlObj));
+            } else {
+                // Add predicate as DataProperty
+                OWLDataProperty owlPred = owlFactory.getOWLDataProperty(IRI.create(pred.getURI()));
+                if (declaredProps.add("data " + pred.getURI())) {
+                    newAxioms.add(owlFactory.getOWLDeclarationAxiom(owlPred));
+                }
+                // Add data triple assertion, keeping the datatype of the column as the direct import does
+                Node literal = obj.asNode();
+                OWLDatatype type = owlFactory.getOWLDatatype(IRI.create(literal.getLiteralDatatypeURI()));
+                newAxioms.add(owlFactory.getOWLDataPropertyAssertionAxiom(owlPred, sub,
+                        owlFactory.getOWLLiteral(literal.getLiteralLexicalForm(), type)));
+            }
+        }
+        return newAxioms;
+    }
+
+    /**
+     * Add one chunk of axioms to the ontology on the Swing thread, which
+     * Protege's listeners expect changes to be made from.
+     *
+     * @param ontManager Manager of the ontology.
+     * @param ontology Ontology to add to.
+     * @param axioms Axioms of the chunk.
+     * @param numStmts Number of statements the chunk was built from.
+     *
+     * @return int - numStmts, for progress.
+     */
+    private static int applyAxioms(OWLOntologyManager ontManager, OWLOntology ontology, Set<OWLAxiom> axioms,
+                                   int numStmts) throws Exception {
+        ChangeApplied[] status = new ChangeApplied[1];
+        SwingUtilities.invokeAndWait(() -> status[0] = ontManager.addAxioms(ontology, axioms));
+        if (status[0] == ChangeApplied.UNSUCCESSFULLY) {
+            throw new Exception("Failed to add new axioms");
+        }
+        return numStmts;
     }
 
     /**
@@ -500,19 +707,15 @@ public class CsvWizard extends Application {
      */
     private void viewModel() {
         if (modelLoaded) {
-            int lineLimit = 500;
+            // Only the first subjects are serialized, so the preview costs the same for any model size
+            Model preview = csvHandler.previewModel(PREVIEW_SUBJECTS);
             ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(128);
-            System.err.println("Start writing");
-            csvHandler.getModel().write(byteArrayOutputStream, "RDF/XML-ABBREV");
-            System.err.println("End writing");
-            // only output the first few lines if the file is too big
-            String[] lines = byteArrayOutputStream.toString().split("\n");
-            String[] linesSubset = Arrays.copyOfRange(lines, 0, Math.min(lines.length, lineLimit));
-            String linesJoined = String.join("\n", linesSubset);
-            if (lines.length > lineLimit) {
-                linesJoined += "\n... truncated " + (lines.length - lineLimit) + " lines ...";
+            preview.write(byteArrayOutputStream, "RDF/XML-ABBREV");
+            String previewText = byteArrayOutputStream.toString();
+            if (preview.listSubjects().toList().size() >= PREVIEW_SUBJECTS) {
+                previewText += "\n... preview truncated to the first " + PREVIEW_SUBJECTS + " subjects ...";
             }
-            Label rdfText = new Label(linesJoined);
+            Label rdfText = new Label(previewText);
             rdfText.setId("rdf-text");
 
             // Set content for ScrollPane
@@ -525,7 +728,10 @@ public class CsvWizard extends Application {
             scrollPane.setHbarPolicy(ScrollPane.ScrollBarPolicy.AS_NEEDED);
 
             saveButton.setVisible(true);
-            execTimeLabel.setText("Execution Time: " + csvHandler.getLastExecTime() + " ms");
+            // Throughput on the label, the per-stage breakdown on hover
+            ConversionStats stats = csvHandler.getLastStats();
+            execTimeLabel.setText(stats.summary());
+            execTimeLabel.setTooltip(new Tooltip(stats.toString()));
             execTimeLabel.setVisible(true);
             scrollPane.setVisible(true);
         } else {
@@ -550,17 +756,21 @@ public class CsvWizard extends Application {
         // Initialize model with header line from file
         String errMsg = null;
         try {
-            FileInputStream fIn = new FileInputStream(selectedFilePath);
+            // Compressed files are decompressed on the fly
+            InputStream fIn = CompressedInput.open(selectedFilePath, null);
             BufferedReader br = new BufferedReader(new InputStreamReader(fIn));
             for (int i = 0; i < linesToSkip; ++i) {
                 br.readLine(); // discard line
             }
             String line = br.readLine(); // reads the first line, or nothing
+            br.close();
             if (line == null || line.trim().length() == 0) {
                 throw new Exception("File is empty: " + selectedFilePath);
             }
-            String[] tokens = line.split(",");
+            String[] tokens = CsvTokenizer.get().split(line);
             csvHandler.initModel(tokens);
+            // Pre-fill the column types below with inferred suggestions
+            csvHandler.inferDatatypes(selectedFilePath, INFER_SAMPLE_ROWS);
         } catch (FileNotFoundException e) {
             errMsg = "No such file: " + selectedFilePath;
         } catch (IOException e) {
@@ -680,6 +890,11 @@ public class CsvWizard extends Application {
                     }
                 }
             });
+            // Suggest the inferred datatype
+            if (!csvHandler.isLiteral(property)) {
+                r3.setSelected(true);
+            }
+            cb.getEditor().setText(csvHandler.getDatatype(property));
             grid.addRow(pIdx + 1, labelRb, new Separator(Orientation.VERTICAL), r1, r2, r3, new Label(property.toString()), cb);
         }
         RadioButton labRb = new RadioButton();
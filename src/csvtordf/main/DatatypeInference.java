@@ -0,0 +1,129 @@
+/**
+ * <h1>DatatypeInference.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Infers the datatype of each CSV column from a bounded sample of
+ * rows. Every column starts with all candidate types, and each
+ * non-empty sampled cell removes the candidates its text is not a valid
+ * lexical form of. The narrowest candidate left is used, falling
+ * back to xsd:string. Only "true" and "false" are taken as booleans,
+ * so columns of 0 and 1 stay integers.
+ * <p>
+ * Columns holding only absolute http(s) IRIs are made resources, so
+ * they link to the referenced nodes instead of repeating them as text.
+ * Only these columns use the IRIs as they are, cells of resource
+ * columns set by the user are always appended to the prefix.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.List;
+import java.util.stream.IntStream;
+
+// Jena imports
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+
+/**
+ * Column datatype inference from sampled rows.
+ */
+class DatatypeInference {
+
+  // Candidate literal types, narrowest first, xsd:boolean must stay first
+  private static final XSDDatatype[] CANDIDATES = {
+      XSDDatatype.XSDboolean, XSDDatatype.XSDint, XSDDatatype.XSDlong, XSDDatatype.XSDdecimal,
+      XSDDatatype.XSDdouble, XSDDatatype.XSDdate, XSDDatatype.XSDdateTime, XSDDatatype.XSDanyURI};
+  private static final int ANY_URI = CANDIDATES.length - 1;
+  // Resource candidate sits between the typed literals and anyURI
+  private static final int RESOURCE = CANDIDATES.length;
+  private static final int ALL = (1 << (CANDIDATES.length + 1)) - 1;
+
+  private DatatypeInference() {}
+
+  /**
+   * Infer the metadata of every column in parallel.
+   *
+   * @param rows Sampled rows, each with numColumns fields.
+   * @param numColumns Number of columns.
+   *
+   * @return PropertyMetadata[] - inferred metadata per column.
+   */
+  static PropertyMetadata[] infer(List<String[]> rows, int numColumns) {
+    return IntStream.range(0, numColumns).parallel()
+        .mapToObj(col -> inferColumn(rows, col))
+        .toArray(PropertyMetadata[]::new);
+  }
+
+  private static PropertyMetadata inferColumn(List<String[]> rows, int col) {
+    int candidates = ALL;
+    int nonEmpty = 0;
+    for (String[] row : rows) {
+      if (candidates == 0) break;
+      // Missing values say nothing about the type of the others
+      if (row[col].isEmpty()) continue;
+      candidates &= fits(row[col]);
+      nonEmpty++;
+    }
+    if (nonEmpty == 0) candidates = 0;
+    for (int i = 0; i < ANY_URI; i++) {
+      if ((candidates & (1 << i)) != 0) {
+        return new PropertyMetadata(true, CANDIDATES[i], "");
+      }
+    }
+    if ((candidates & (1 << RESOURCE)) != 0) {
+      PropertyMetadata meta = new PropertyMetadata(false, null, "");
+      meta.keepIris = true;
+      return meta;
+    }
+    if ((candidates & (1 << ANY_URI)) != 0) {
+      return new PropertyMetadata(true, XSDDatatype.XSDanyURI, "");
+    }
+    return new PropertyMetadata(true, XSDDatatype.XSDstring, "");
+  }
+
+  /**
+   * @return int - bit set of the candidates the cell is valid for.
+   */
+  private static int fits(String cell) {
+    int mask = 0;
+    if (isAbsoluteUri(cell)) {
+      mask |= (1 << ANY_URI);
+      if (isHttpIri(cell)) mask |= (1 << RESOURCE);
+      return mask;
+    }
+    // xsd:boolean also allows "1" and "0", which would turn 0/1 integer columns into booleans
+    if (cell.equals("true") || cell.equals("false")) mask |= 1;
+    for (int i = 1; i < ANY_URI; i++) {
+      if (CANDIDATES[i].isValid(cell)) mask |= (1 << i);
+    }
+    return mask;
+  }
+
+  /**
+   * Check if a cell holds an absolute http(s) IRI, which is used as-is
+   * in columns marked to keep IRIs instead of being appended to the prefix.
+   *
+   * @param cell Text of the cell.
+   *
+   * @return boolean - true if the cell is an http(s) IRI.
+   */
+  static boolean isHttpIri(String cell) {
+    return (cell.startsWith("http://") || cell.startsWith("https://")) && isAbsoluteUri(cell);
+  }
+
+  private static boolean isAbsoluteUri(String cell) {
+    // scheme ":" followed by something, and no whitespace anywhere
+    int colon = cell.indexOf(':');
+    if (colon <= 0 || colon == cell.length() - 1 || !Character.isLetter(cell.charAt(0))) return false;
+    for (int i = 1; i < colon; i++) {
+      char c = cell.charAt(i);
+      if (!Character.isLetterOrDigit(c) && c != '+' && c != '-' && c != '.') return false;
+    }
+    for (int i = colon + 1; i < cell.length(); i++) {
+      if (Character.isWhitespace(cell.charAt(i))) return false;
+    }
+    return true;
+  }
+}
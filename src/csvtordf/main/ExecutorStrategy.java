@@ -0,0 +1,137 @@
+/**
+ * <h1>ExecutorStrategy.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Ways of running the worker threads of a conversion. By default every
+ * conversion starts a fixed pool and shuts it down afterwards. Programs
+ * converting many files, such as the wizard re-importing, can instead
+ * keep one pool per CsvToRdf instance so later conversions reuse warm
+ * threads, either a plain fixed pool or a work-stealing ForkJoinPool
+ * which balances uneven tasks such as the ranges of a mapped file.
+ * <p>
+ * On JDK 21 and later, workers can also run on virtual threads. These
+ * are looked up reflectively, so the project still builds for Java 8.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor strategy of a CsvToRdf instance, see {@link CsvToRdf#setExecutorStrategy(ExecutorStrategy)}.
+ */
+public enum ExecutorStrategy {
+  /** New fixed thread pool for every conversion, shut down when it ends. */
+  FIXED("fixed", false),
+  /** Fixed thread pool kept by the instance and reused by every conversion. */
+  SHARED("shared", true),
+  /** Work-stealing ForkJoinPool kept by the instance and reused by every conversion. */
+  WORK_STEALING("forkjoin", true),
+  /** One virtual thread per task, needs JDK 21 or later. */
+  VIRTUAL("virtual", false);
+
+  // Executors.newVirtualThreadPerTaskExecutor(), or null before JDK 21
+  private static final Method VIRTUAL_FACTORY = virtualFactory();
+  private static final AtomicInteger WORKER_IDS = new AtomicInteger();
+
+  private final String name;
+  private final boolean reusable;
+
+  ExecutorStrategy(String name, boolean reusable) {
+    this.name = name;
+    this.reusable = reusable;
+  }
+
+  /**
+   * @return String - name used on the command line.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return boolean - true if the executor is kept between conversions.
+   */
+  public boolean isReusable() {
+    return reusable;
+  }
+
+  /**
+   * @return boolean - false if the running JDK cannot provide this executor.
+   */
+  public boolean isSupported() {
+    return this != VIRTUAL || VIRTUAL_FACTORY != null;
+  }
+
+  /**
+   * Look up a strategy by its command line name.
+   *
+   * @param name Strategy name, e.g. "forkjoin".
+   *
+   * @return ExecutorStrategy - the strategy.
+   */
+  public static ExecutorStrategy forName(String name) {
+    for (ExecutorStrategy strategy : values()) {
+      if (strategy.name.equalsIgnoreCase(name)) return strategy;
+    }
+    throw new IllegalArgumentException("Unknown executor " + name + ", expected one of " + names());
+  }
+
+  /**
+   * @return String - accepted strategy names, comma separated.
+   */
+  public static String names() {
+    StringBuilder names = new StringBuilder();
+    for (ExecutorStrategy strategy : values()) {
+      if (names.length() > 0) names.append(", ");
+      names.append(strategy.name);
+    }
+    return names.toString();
+  }
+
+  /**
+   * Create an executor able to run the given number of tasks at once.
+   * Threads of reusable executors are daemons, so a pool that is never
+   * shut down does not keep the JVM alive.
+   *
+   * @param threads Number of tasks run at once.
+   *
+   * @return ExecutorService - the executor.
+   */
+  ExecutorService create(int threads) {
+    switch (this) {
+      case SHARED:
+        return Executors.newFixedThreadPool(threads, r -> {
+          Thread t = new Thread(r, "csvtordf-worker-" + WORKER_IDS.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        });
+      case WORK_STEALING:
+        return new ForkJoinPool(threads);
+      case VIRTUAL:
+        if (VIRTUAL_FACTORY == null) throw new IllegalStateException("Virtual threads need JDK 21 or later");
+        try {
+          return (ExecutorService) VIRTUAL_FACTORY.invoke(null);
+        } catch (ReflectiveOperationException e) {
+          throw new IllegalStateException("Could not create virtual threads: " + e.getMessage(), e);
+        }
+      default:
+        return Executors.newFixedThreadPool(threads);
+    }
+  }
+
+  private static Method virtualFactory() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+}
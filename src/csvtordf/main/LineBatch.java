@@ -0,0 +1,137 @@
+/**
+ * <h1>LineBatch.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Reusable batch of CSV lines handed from the reader to the workers.
+ * The text of all lines is kept in one char buffer with the end offset
+ * of every line, instead of a String per line, and a batch is recycled
+ * once its triples have been handed to the sink. Reading millions of
+ * rows then allocates a handful of buffers rather than a String and an
+ * array per line and batch, which keeps young collections rare.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.util.Arrays;
+import java.util.Queue;
+
+/**
+ * Consecutive CSV lines stored in a shared char buffer.
+ */
+class LineBatch {
+  // Marks the end of input for a worker
+  static final LineBatch END = new LineBatch();
+
+  private char[] chars = new char[8192];
+  private int[] ends = new int[64];
+  private CharBuffer charBuffer = CharBuffer.wrap(chars);
+  private int length = 0;  // chars in use
+  int size = 0;            // complete lines
+  long firstRow = 0;       // 0-based row number of the first line, excluding header
+
+  /**
+   * Empty the batch for reuse.
+   *
+   * @param firstRow Row number of the next line added.
+   */
+  void reset(long firstRow) {
+    this.firstRow = firstRow;
+    size = 0;
+    length = 0;
+  }
+
+  /**
+   * @return char[] - buffer holding the text of every line.
+   */
+  char[] chars() {
+    return chars;
+  }
+
+  /**
+   * @return int - offset of the first char of line n in chars().
+   */
+  int start(int n) {
+    return n == 0 ? 0 : ends[n - 1];
+  }
+
+  /**
+   * @return int - offset after the last char of line n in chars().
+   */
+  int end(int n) {
+    return ends[n];
+  }
+
+  /**
+   * @return String - line n, for error messages and tests.
+   */
+  String line(int n) {
+    return new String(chars, start(n), end(n) - start(n));
+  }
+
+  /**
+   * @return boolean - true if text was appended since the last complete line.
+   */
+  boolean hasOpenLine() {
+    return length > start(size);
+  }
+
+  /**
+   * Append text to the line being built.
+   */
+  void append(char[] src, int from, int to) {
+    ensureCapacity(length + to - from);
+    System.arraycopy(src, from, chars, length, to - from);
+    length += to - from;
+  }
+
+  /**
+   * Append a whole line decoded from bytes, without creating a String.
+   *
+   * @param bytes Bytes of the line between position and limit, consumed.
+   * @param decoder Decoder of the input charset, replacing malformed input.
+   */
+  void addLine(ByteBuffer bytes, CharsetDecoder decoder) {
+    ensureCapacity(length + (int) Math.ceil(bytes.remaining() * (double) decoder.maxCharsPerByte()));
+    charBuffer.limit(chars.length).position(length);
+    decoder.reset();
+    decoder.decode(bytes, charBuffer, true);
+    decoder.flush(charBuffer);
+    length = charBuffer.position();
+    endLine();
+  }
+
+  /**
+   * Complete the line being built.
+   */
+  void endLine() {
+    if (size == ends.length) ends = Arrays.copyOf(ends, size * 2);
+    ends[size++] = length;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= chars.length) return;
+    chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+    charBuffer = CharBuffer.wrap(chars);
+  }
+
+  /**
+   * Take a batch from a pool of recycled batches, or create one.
+   *
+   * @param pool Recycled batches.
+   * @param firstRow Row number of the first line.
+   *
+   * @return LineBatch - empty batch.
+   */
+  static LineBatch take(Queue<LineBatch> pool, long firstRow) {
+    LineBatch batch = pool.poll();
+    if (batch == null) batch = new LineBatch();
+    batch.reset(firstRow);
+    return batch;
+  }
+}
@@ -0,0 +1,82 @@
+/**
+ * <h1>LineBatchReader.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Reads the lines of a sequential input straight into the char buffer
+ * of a LineBatch, one 64K block at a time, so no String is created
+ * for a line before it is tokenized.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits a character stream into lines directly into LineBatch buffers.
+ * Lines end at "\n", "\r" or "\r\n", as for BufferedReader.readLine().
+ */
+class LineBatchReader {
+  private final Reader in;
+  private final char[] block = new char[1 << 16];
+  private int pos = 0;
+  private int limit = 0;
+  private boolean skipLF = false; // last block ended on \r
+  private boolean eof = false;
+
+  /**
+   * @param in Reader positioned at the first data row. Lines it has already
+   *           buffered, e.g. for a BufferedReader, are read first.
+   */
+  LineBatchReader(Reader in) {
+    this.in = in;
+  }
+
+  /**
+   * Add up to a number of lines to a batch.
+   *
+   * @param batch Batch to fill.
+   * @param lines Lines to add.
+   *
+   * @return boolean - false if the input ended before any line was added.
+   */
+  boolean fill(LineBatch batch, int lines) throws IOException {
+    int target = batch.size + lines;
+    while (batch.size < target) {
+      if (pos == limit) {
+        if (eof) break;
+        limit = in.read(block);
+        pos = 0;
+        if (limit < 0) {
+          limit = 0;
+          eof = true;
+          // A last line without terminator
+          if (batch.hasOpenLine()) batch.endLine();
+          break;
+        }
+        continue;
+      }
+      if (skipLF) {
+        skipLF = false;
+        if (block[pos] == '\n') {
+          pos++;
+          continue;
+        }
+      }
+      int i = pos;
+      while (i < limit && block[i] != '\n' && block[i] != '\r') i++;
+      batch.append(block, pos, i);
+      if (i == limit) {
+        pos = limit; // line continues in the next block
+        continue;
+      }
+      skipLF = block[i] == '\r';
+      pos = i + 1;
+      batch.endLine();
+    }
+    return batch.size > 0;
+  }
+}
@@ -0,0 +1,298 @@
+/**
+ * <h1>MappedCsvReader.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Parallel reader for a memory-mapped CSV file. The data section
+ * of the file is split into byte ranges which are processed by
+ * separate workers, so decoding is no longer limited to a single
+ * reading thread.
+ * <p>
+ * Splits are moved onto record boundaries. A newline only ends a
+ * record when it is outside of quotes. As in CsvTokenizer, a quote
+ * only opens a quoted field at the start of a field, so a stray
+ * quote such as in a"b is plain text. Whether a byte is quoted
+ * therefore depends on a small state machine rather than on the
+ * parity of the quotes before it. A first parallel pass runs every
+ * chunk from each of the four states at once, recording the state
+ * it ends in and the record ends it sees, and a cheap sequential
+ * prefix pass chains those results to give both the aligned start
+ * of each range and the global row number of its first record,
+ * keeping line numbered URIs identical to the sequential reader.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+
+/**
+ * Splits a mapped CSV file into record-aligned ranges processed in parallel.
+ */
+class MappedCsvReader {
+
+  // Mappings are limited to 2GB, keep chunks well under that
+  private static final long MAX_CHUNK = 1L << 30;
+  // Not worth splitting ranges smaller than this
+  private static final long MIN_CHUNK = 1L << 20;
+  // More ranges than threads so uneven ranges still balance
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private static final byte NL = '\n';
+  private static final byte CR = '\r';
+  private static final byte QUOTE = '"';
+  private static final byte DELIM = ',';
+
+  // Scanner states, the same as CsvTokenizer's
+  private static final int FIELD_START = 0; // outside quotes at the start of a field
+  private static final int UNQUOTED = 1;    // outside quotes within a field
+  private static final int QUOTED = 2;      // inside a quoted field
+  private static final int QUOTE_SEEN = 3;  // quote inside a quoted field, closing it unless another follows
+  private static final int STATES = 4;
+  // Next state by current state and byte class: other, quote, delimiter, newline
+  private static final int[][] NEXT = {
+      {UNQUOTED, QUOTED,     FIELD_START, FIELD_START},
+      {UNQUOTED, UNQUOTED,   FIELD_START, FIELD_START},
+      {QUOTED,   QUOTE_SEEN, QUOTED,      QUOTED},
+      {UNQUOTED, QUOTED,     FIELD_START, FIELD_START}};
+
+  private final String path;
+  private final int headerLines;
+
+  /**
+   * Results gathered for one raw chunk in the first pass, for every
+   * state the chunk may start in, as which newlines end records
+   * depends on the state at the start of the chunk.
+   */
+  private static class ChunkScan {
+    int[] end = new int[STATES];
+    long[] newlines = new long[STATES];
+    long[] first = {-1, -1, -1, -1};
+  }
+
+  /**
+   * @param path Path to CSV file.
+   * @param headerLines Lines at the beginning of the file that are not data rows
+   *                    (skipped lines plus the header).
+   */
+  MappedCsvReader(String path, int headerLines) {
+    this.path = path;
+    this.headerLines = headerLines;
+  }
+
+  /**
+   * Process every data row of the file.
+   *
+   * @param service Executor to run scans and ranges on.
+   * @param threads Number of threads in the executor.
+   * @param processor Processor handling batches of lines.
+   * @param sizer Number of lines per batch.
+   * @param stats Metrics of the conversion, for read time and bytes read.
+   */
+  void process(ExecutorService service, int threads, MultiThreadCsvProcessor processor, BatchSizer sizer,
+               ConversionStats stats) throws Exception {
+    try (RandomAccessFile file = new RandomAccessFile(path, "r");
+         FileChannel channel = file.getChannel()) {
+      long size = channel.size();
+      long dataStart = findDataStart(channel, size);
+      long dataLen = size - dataStart;
+      stats.addBytesRead(dataStart);
+      if (dataLen <= 0) return;
+
+      // Raw chunks, ignoring record boundaries
+      int numChunks = (int) Math.max(Math.min((long) threads * CHUNKS_PER_THREAD, (dataLen + MIN_CHUNK - 1) / MIN_CHUNK),
+                                     (dataLen + MAX_CHUNK - 1) / MAX_CHUNK);
+      numChunks = Math.max(numChunks, 1);
+      long[] chunkStart = new long[numChunks + 1];
+      for (int k = 0; k <= numChunks; k++) {
+        chunkStart[k] = dataStart + dataLen * k / numChunks;
+      }
+
+      // First pass: scan every chunk in parallel from each start state
+      ArrayList<Future<ChunkScan>> scans = new ArrayList<>();
+      for (int k = 0; k < numChunks; k++) {
+        final long from = chunkStart[k], to = chunkStart[k + 1];
+        scans.add(service.submit(() -> scan(channel, from, to)));
+      }
+
+      // Prefix pass: the state at each chunk start decides which newlines end records
+      long[] rangeStart = new long[numChunks + 1];
+      long[] rowsBefore = new long[numChunks];
+      int state = FIELD_START; // header assumed to close all of its quotes
+      long rows = 0;
+      for (int k = 0; k < numChunks; k++) {
+        ChunkScan scan = get(scans.get(k));
+        if (k == 0) {
+          rangeStart[k] = dataStart;
+          rowsBefore[k] = 0;
+        } else if (scan.first[state] >= 0) {
+          rangeStart[k] = scan.first[state] + 1;
+          rowsBefore[k] = rows + 1;
+        } else {
+          rangeStart[k] = -1; // no record starts in this chunk
+        }
+        rows += scan.newlines[state];
+        state = scan.end[state];
+      }
+      rangeStart[numChunks] = size;
+      for (int k = numChunks - 1; k > 0; k--) {
+        if (rangeStart[k] < 0) rangeStart[k] = rangeStart[k + 1];
+      }
+
+      // Second pass: every worker decodes and processes its own range
+      ArrayList<Future<Void>> results = new ArrayList<>();
+      for (int k = 0; k < numChunks; k++) {
+        final long from = rangeStart[k], to = rangeStart[k + 1], firstRow = rowsBefore[k];
+        if (from >= to) continue;
+        results.add(service.submit(() -> {
+          try {
+            processRange(channel, from, to, firstRow, processor, sizer, stats);
+          } catch (Exception e) {
+            // Other ranges stop at their next batch
+            processor.fail(e);
+            throw e;
+          }
+          return null;
+        }));
+      }
+      // Wait for every range, the executor may be reused once this returns
+      Exception failed = null;
+      for (Future<Void> result : results) {
+        try {
+          get(result);
+        } catch (Exception e) {
+          if (failed == null) failed = e;
+        }
+      }
+      if (failed != null) throw failed;
+    }
+  }
+
+  /**
+   * Find the offset of the first data row, after skipped lines and the header.
+   */
+  private long findDataStart(FileChannel channel, long size) throws IOException {
+    long pos = 0;
+    int remaining = headerLines;
+    while (remaining > 0 && pos < size) {
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAX_CHUNK, size - pos));
+      int len = buf.limit();
+      int i = 0;
+      while (remaining > 0 && i < len) {
+        if (buf.get(i++) == NL) remaining--;
+      }
+      pos += i;
+    }
+    return pos;
+  }
+
+  private static ChunkScan scan(FileChannel channel, long from, long to) throws IOException {
+    MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    ChunkScan scan = new ChunkScan();
+    int len = buf.limit();
+    int[] state = {FIELD_START, UNQUOTED, QUOTED, QUOTE_SEEN};
+    for (int i = 0; i < len; i++) {
+      byte b = buf.get(i);
+      int c = byteClass(b);
+      for (int s = 0; s < STATES; s++) {
+        if (b == NL && state[s] != QUOTED) {
+          if (scan.first[s] < 0) scan.first[s] = from + i;
+          scan.newlines[s]++;
+        }
+        state[s] = NEXT[state[s]][c];
+      }
+    }
+    scan.end = state;
+    return scan;
+  }
+
+  private static void processRange(FileChannel channel, long from, long to, long firstRow,
+                                   MultiThreadCsvProcessor processor, BatchSizer sizer,
+                                   ConversionStats stats) throws Exception {
+    // Read time is the time of the range minus the time spent processing its batches
+    long rangeStart = System.nanoTime();
+    long cpuStart = ConversionStats.cpuTime();
+    long processing = 0;
+    long cpuProcessing = 0;
+    int counted = 0; // bytes already added to the stats, updated per batch for progress
+    MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+    int len = buf.limit();
+    // Same charset as the sequential reader, which must be ASCII compatible for the byte scan
+    CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    // Lines are decoded straight into one batch, reused as processing is synchronous
+    long row = firstRow;
+    LineBatch batch = new LineBatch();
+    batch.reset(row);
+    int lines = sizer.next();
+    int state = FIELD_START;
+    int start = 0;
+    for (int i = 0; i <= len; i++) {
+      if (i < len) {
+        byte b = buf.get(i);
+        int c = byteClass(b);
+        boolean recordEnd = b == NL && state != QUOTED;
+        state = NEXT[state][c];
+        if (!recordEnd) continue;
+      } else if (start == len) {
+        break; // range ended with a newline
+      }
+      // Decode record [start, i), dropping a \r of a \r\n terminator
+      int end = (i > start && buf.get(i - 1) == CR) ? i - 1 : i;
+      buf.limit(end).position(start);
+      batch.addLine(buf, decoder);
+      buf.limit(len);
+      start = i + 1;
+      if (batch.size == lines) {
+        int read = Math.min(start, len); // the last record may have no newline
+        stats.addBytesRead(read - counted);
+        counted = read;
+        long batchStart = System.nanoTime();
+        long cpuBatchStart = ConversionStats.cpuTime();
+        processor.processBatch(batch);
+        processing += System.nanoTime() - batchStart;
+        cpuProcessing += ConversionStats.cpuTime() - cpuBatchStart;
+        row += batch.size;
+        batch.reset(row);
+        lines = sizer.next();
+      }
+    }
+    stats.addStage(ConversionStats.Stage.READ, System.nanoTime() - rangeStart - processing,
+                   ConversionStats.cpuTime() - cpuStart - cpuProcessing);
+    stats.addBytesRead(len - counted);
+    if (batch.size > 0) {
+      processor.processBatch(batch);
+    }
+  }
+
+  /**
+   * @return int - column of the byte in NEXT.
+   */
+  private static int byteClass(byte b) {
+    switch (b) {
+      case QUOTE: return 1;
+      case DELIM: return 2;
+      case NL: return 3;
+      default: return 0;
+    }
+  }
+
+  private static <T> T get(Future<T> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) throw (Exception) cause;
+      throw e;
+    }
+  }
+}
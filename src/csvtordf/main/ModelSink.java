@@ -0,0 +1,54 @@
+/**
+ * <h1>ModelSink.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Default sink of a conversion, adding every batch to the graph of
+ * an in-memory Model under its write lock.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.concurrent.atomic.LongAdder;
+
+// Jena imports
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.shared.Lock;
+
+/**
+ * Sink inserting triples into an in-memory Jena Model.
+ */
+class ModelSink implements TripleSink {
+  private final Model model;
+  private final LongAdder lockWait = new LongAdder();
+
+  public ModelSink(Model model) {
+    this.model = model;
+  }
+
+  public void start() {}
+
+  public void accept(Triple[] batch) {
+    // Locks are expensive, but tested with having each thread maintain its own model and merge at the end,
+    // and performance was the same or worse. Batching/locking had the best results.
+    Graph graph = model.getGraph();
+    long waitStart = System.nanoTime();
+    model.enterCriticalSection(Lock.WRITE);
+    lockWait.add(System.nanoTime() - waitStart);
+    try {
+      for (Triple t : batch) {
+        graph.add(t);
+      }
+    } finally {
+      model.leaveCriticalSection();
+    }
+  }
+
+  public void finish() {}
+
+  public long getLockWaitNanos() { return lockWait.sum(); }
+}
@@ -0,0 +1,190 @@
+/**
+ * <h1>MultiThreadCsvProcessor.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Worker turning batches of CSV lines into triples. Queued workers
+ * take batches from the reader, memory-mapped ranges call
+ * processBatch() directly with the lines they decoded.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.ArrayList;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Jena imports
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.vocabulary.RDF;
+
+/**
+ *
+ * Execution class for parallel processing of CSV file. Each worker takes
+ * batches of lines from the shared queue until it sees LineBatch.END,
+ * and returns every batch to the pool once its triples are in the sink.
+ *
+ */
+class MultiThreadCsvProcessor implements Callable<Void> {
+  private final BlockingQueue<LineBatch> queue;
+  private final Queue<LineBatch> pool;
+  private final String prefix;
+  private final String label;
+  private final TripleSink sink;
+  private final ArrayList<Property> properties;
+  private final ArrayList<PropertyMetadata> propData;
+  private final String rdfType;
+  private final AtomicReference<Exception> failure;
+  private final NodeCache cache;
+  private final BatchSizer sizer;
+  private final ConversionStats stats;
+  private final int labelIdx;
+
+  public MultiThreadCsvProcessor(TripleSink sink, String prefix, String label, ArrayList<Property> properties, ArrayList<PropertyMetadata> propData, String rdfType,
+                                 NodeCache cache, BatchSizer sizer, ConversionStats stats, BlockingQueue<LineBatch> queue,
+                                 Queue<LineBatch> pool, AtomicReference<Exception> failure) {
+    this.sink = sink;
+    this.cache = cache;
+    this.sizer = sizer;
+    this.stats = stats;
+    this.prefix = prefix;
+    this.label = label;
+    this.properties = properties;
+    this.propData = propData;
+    this.rdfType = rdfType;
+    this.queue = queue;
+    this.pool = pool;
+    this.failure = failure;
+    int idx = -1;
+    // See if any property is set to be used as URI label
+    for (int i = 0; i < propData.size(); i++) {
+        if (propData.get(i).useAsLabel) {
+            idx = i;
+            break;
+        }
+    }
+    this.labelIdx = idx;
+  }
+
+  public Void call() throws Exception {
+    while (true) {
+      long waitStart = System.nanoTime();
+      LineBatch batch = queue.take();
+      sizer.recordIdle(System.nanoTime() - waitStart);
+      if (batch == LineBatch.END) break;
+      // After a failure keep draining so the reader never blocks on a full queue
+      if (failure.get() != null) continue;
+      try {
+        processBatch(batch);
+      } catch (Throwable e) {
+        // Errors such as running out of heap must not end the worker before END either
+        failure.compareAndSet(null, e instanceof Exception ? (Exception) e : new Exception("Worker failed: " + e, e));
+      }
+      pool.offer(batch);
+    }
+    return null;
+  }
+
+  /**
+   * Record a failure, making every worker of this conversion stop.
+   *
+   * @param e The failure, ignored if one was recorded before.
+   */
+  void fail(Exception e) {
+    failure.compareAndSet(null, e);
+  }
+
+  /**
+   * Tokenize a batch of lines and pass the resulting triples to the sink.
+   *
+   * @param batch Lines to process.
+   */
+  void processBatch(LineBatch batch) throws Exception {
+    // Stop mapped range readers too once the conversion failed or was cancelled
+    Exception failed = failure.get();
+    if (failed != null) throw failed;
+    long start = System.nanoTime();
+    long cpuStart = ConversionStats.cpuTime();
+    // Build triples outside of any lock, the sink decides how to store them
+    CsvTokenizer tokenizer = CsvTokenizer.get();
+    Node typeNode = RDF.type.asNode();
+    Node rdfClass = rdfType.equals("") ? null : NodeFactory.createURI(rdfType);
+    ArrayList<Triple> triples = new ArrayList<>(batch.size * (properties.size() + 1));
+    // IRIs are built here, cells only become Strings as lexical forms of new nodes
+    StringBuilder iri = new StringBuilder(128);
+    // Types of new object resources, added after the row so its own triples stay together
+    ArrayList<Triple> objectTypes = new ArrayList<>();
+    char[] line = batch.chars();
+    for (int n = 0; n < batch.size; n++) {
+      long i = batch.firstRow + n;
+      int numTokens = tokenizer.tokenize(line, batch.start(n), batch.end(n));
+      if (numTokens < properties.size()) {
+        throw new Exception("Line " + (i+1) + " too short, should contain " + properties.size() + " fields");
+      } else if (numTokens > properties.size()) {
+        throw new Exception("Line " + (i+1) + " too long, should contain " + properties.size() + " fields");
+      }
+      char[] cells = tokenizer.buffer();
+
+      //The row is the subject
+      iri.setLength(0);
+      iri.append(prefix);
+      if (labelIdx >= 0) {
+          iri.append(cells, tokenizer.start(labelIdx), tokenizer.length(labelIdx));
+      } else {
+          iri.append(this.label).append(i);
+      }
+      Node instance = NodeFactory.createURI(iri.toString());
+      if (rdfClass != null) {
+        triples.add(new Triple(instance, typeNode, rdfClass));
+      }
+      for (int j = 0; j < numTokens; j++) {
+        //jth property is the predicate
+        //cell is the object
+        Node property = properties.get(j).asNode();
+        PropertyMetadata meta = propData.get(j);
+        if (!meta.isSkipped) {
+          int from = tokenizer.start(j);
+          int length = tokenizer.length(j);
+          Node obj = (cache != null) ? cache.get(j, cells, from, length) : null;
+          if (obj == null) {
+            String cell = new String(cells, from, length);
+            if (meta.isLiteral) {
+              obj = NodeFactory.createLiteral(cell, meta.literalType);
+              if (cache != null) cache.put(j, cells, from, length, obj);
+            } else {
+              // the jth token is an object. create new object for it.
+              // if it already exists, the sink will merge it with the existing one
+              // absolute http(s) IRIs are used as they are where marked, anything else gets the prefix
+              obj = NodeFactory.createURI(meta.keepIris && DatatypeInference.isHttpIri(cell) ? cell : prefix + cell);
+              if (cache != null) cache.put(j, cells, from, length, obj);
+              if (!meta.objectType.equals("")) {
+                  // Set type of this new resource, only needed the first time it is seen
+                  objectTypes.add(new Triple(obj, typeNode, NodeFactory.createURI(meta.objectType)));
+              }
+            }
+          }
+          triples.add(new Triple(instance, property, obj));
+        }
+      }
+      triples.addAll(objectTypes);
+      objectTypes.clear();
+    }
+    long built = System.nanoTime();
+    long cpuBuilt = ConversionStats.cpuTime();
+    stats.addStage(ConversionStats.Stage.BUILD, built - start, cpuBuilt - cpuStart);
+
+    sink.accept(triples.toArray(new Triple[0]));
+    long end = System.nanoTime();
+    stats.addStage(ConversionStats.Stage.INSERT, end - built, ConversionStats.cpuTime() - cpuBuilt);
+    stats.addRows(batch.size);
+    stats.addTriples(triples.size());
+    sizer.recordBatch(batch.size, end - start);
+  }
+}
@@ -0,0 +1,164 @@
+/**
+ * <h1>NodeCache.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Bounded, concurrent interning cache for the object nodes created
+ * while converting. Categorical columns often hold only a few
+ * thousand distinct values across millions of rows, so reusing one
+ * Node per value saves the IRI/literal allocation for every
+ * repeated cell.
+ * <p>
+ * There is one cache per column, keyed by the cell text, as a
+ * column always maps a cell to the same kind of node. Cells are
+ * looked up by their chars in the tokenizer buffer, so a hit does
+ * not even create the String of the cell. Columns whose
+ * values turn out to be mostly unique stop being cached after a
+ * while, so they do not pay for useless evictions.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+// Jena imports
+import org.apache.jena.atlas.lib.Cache;
+import org.apache.jena.atlas.lib.CacheFactory;
+import org.apache.jena.graph.Node;
+
+/**
+ * Per-column cache of object nodes for one conversion.
+ */
+class NodeCache {
+
+  // Lookups on a column before deciding whether caching it pays off
+  private static final long SAMPLE_LOOKUPS = 10000;
+  // Columns with a hit rate below this are no longer cached
+  private static final double MIN_HIT_RATE = 0.1;
+
+  private final Cache<CellKey, Node>[] columns;
+  private final LongAdder[] columnHits;
+  private final LongAdder[] columnLookups;
+  private final boolean[] disabled; // benign race, only ever set to true
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  // Lookup key of each thread, pointed at the chars of the cell looked up
+  private final ThreadLocal<CellKey> probes = ThreadLocal.withInitial(CellKey::new);
+
+  /**
+   * @param numColumns Number of CSV columns.
+   * @param capacity Maximum number of nodes cached per column.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  NodeCache(int numColumns, int capacity) {
+    columns = new Cache[numColumns];
+    columnHits = new LongAdder[numColumns];
+    columnLookups = new LongAdder[numColumns];
+    disabled = new boolean[numColumns];
+    for (int i = 0; i < numColumns; i++) {
+      columns[i] = CacheFactory.createCache(capacity);
+      columnHits[i] = new LongAdder();
+      columnLookups[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Look up the node for a cell.
+   *
+   * @param column Column of the cell.
+   * @param chars Buffer holding the text of the cell.
+   * @param offset Offset of the cell in chars.
+   * @param length Length of the cell.
+   *
+   * @return Node - cached node, or null if it must be created and put().
+   */
+  Node get(int column, char[] chars, int offset, int length) {
+    if (disabled[column]) {
+      misses.increment();
+      return null;
+    }
+    Node node = columns[column].getIfPresent(probes.get().set(chars, offset, length));
+    columnLookups[column].increment();
+    if (node != null) {
+      columnHits[column].increment();
+      hits.increment();
+    } else {
+      misses.increment();
+    }
+    return node;
+  }
+
+  /**
+   * Add a newly created node for a cell.
+   *
+   * @param column Column of the cell.
+   * @param chars Buffer holding the text of the cell.
+   * @param offset Offset of the cell in chars.
+   * @param length Length of the cell.
+   * @param node Node created for the cell.
+   */
+  void put(int column, char[] chars, int offset, int length, Node node) {
+    if (disabled[column]) return;
+    long lookups = columnLookups[column].sum();
+    if (lookups >= SAMPLE_LOOKUPS && columnHits[column].sum() < lookups * MIN_HIT_RATE) {
+      // Mostly unique values, stop caching this column
+      disabled[column] = true;
+      columns[column].clear();
+      return;
+    }
+    columns[column].put(new CellKey().set(Arrays.copyOfRange(chars, offset, offset + length), 0, length), node);
+  }
+
+  /**
+   * @return long - number of lookups that found a cached node.
+   */
+  long getHits() { return hits.sum(); }
+
+  /**
+   * @return long - number of lookups that had to create a node.
+   */
+  long getMisses() { return misses.sum(); }
+}
+
+/**
+ * Text of a cell as a range of a char array. Cached keys own a copy of
+ * their chars, lookup keys point into the tokenizer buffer.
+ */
+final class CellKey {
+  private char[] chars;
+  private int offset;
+  private int length;
+  private int hash;
+
+  CellKey set(char[] chars, int offset, int length) {
+    this.chars = chars;
+    this.offset = offset;
+    this.length = length;
+    int h = 0;
+    for (int i = offset; i < offset + length; i++) {
+      h = 31 * h + chars[i];
+    }
+    hash = h;
+    return this;
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof CellKey)) return false;
+    CellKey other = (CellKey) o;
+    if (hash != other.hash || length != other.length) return false;
+    for (int i = 0; i < length; i++) {
+      if (chars[offset + i] != other.chars[other.offset + i]) return false;
+    }
+    return true;
+  }
+}
@@ -0,0 +1,201 @@
+/**
+ * <h1>OwlAxiomSink.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Sink turning converted triples straight into OWL axioms of a
+ * Protege ontology, without building a Jena Model first. Workers
+ * create the axioms of their own batches in parallel, using
+ * OWL properties precomputed once per column, and a single
+ * applier thread adds them to the ontology in bounded chunks.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.swing.SwingUtilities;
+
+// Jena imports
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.vocabulary.RDF;
+import org.apache.jena.vocabulary.RDFS;
+
+// Protege imports
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.model.parameters.ChangeApplied;
+
+/**
+ * Sink adding converted rows to an OWL ontology as axioms.
+ */
+public class OwlAxiomSink implements TripleSink {
+
+  // Axioms added to the ontology per change
+  static final int APPLY_SIZE = 50000;
+  // Batches of axioms waiting for the applier before workers block
+  private static final int QUEUE_CAPACITY = 64;
+  // Marks the end of input for the applier
+  private static final Set<OWLAxiom> END = Collections.emptySet();
+
+  private final OWLOntology ontology;
+  private final OWLOntologyManager manager;
+  private final OWLDataFactory factory;
+  private final boolean onSwingThread;
+
+  // Precomputed per column, read-only once constructed
+  private final Map<Node, OWLObjectProperty> objectProps = new HashMap<>();
+  private final Map<Node, OWLDataProperty> dataProps = new HashMap<>();
+  // Few distinct classes and datatypes, shared by the workers
+  private final ConcurrentHashMap<Node, OWLClass> classes = new ConcurrentHashMap<>();
+  private final ConcurrentHashMap<String, OWLDatatype> datatypes = new ConcurrentHashMap<>();
+
+  private final BlockingQueue<Set<OWLAxiom>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final AtomicReference<Exception> failure = new AtomicReference<>();
+  private final Set<OWLAxiom> declarations = new HashSet<>();
+  private Thread applier;
+  private volatile long added = 0;
+
+  /**
+   * @param ontology Ontology to add the axioms to.
+   * @param handler Handler whose properties and datatypes are converted.
+   * @param onSwingThread true to make the changes on the Swing thread, as
+   *                      required when the ontology is open in Protege.
+   */
+  public OwlAxiomSink(OWLOntology ontology, CsvToRdf handler, boolean onSwingThread) {
+    this.ontology = ontology;
+    this.manager = ontology.getOWLOntologyManager();
+    this.factory = manager.getOWLDataFactory();
+    this.onSwingThread = onSwingThread;
+    for (Property property : handler.getProperties()) {
+      IRI iri = IRI.create(property.getURI());
+      if (handler.isLiteral(property)) {
+        OWLDataProperty owlProp = factory.getOWLDataProperty(iri);
+        dataProps.put(property.asNode(), owlProp);
+        declarations.add(factory.getOWLDeclarationAxiom(owlProp));
+      } else {
+        OWLObjectProperty owlProp = factory.getOWLObjectProperty(iri);
+        objectProps.put(property.asNode(), owlProp);
+        declarations.add(factory.getOWLDeclarationAxiom(owlProp));
+      }
+    }
+  }
+
+  public void start() {
+    applier = new Thread(this::apply, "csvtordf-owl-applier");
+    applier.setDaemon(true);
+    applier.start();
+  }
+
+  public void accept(Triple[] batch) throws Exception {
+    if (failure.get() != null) throw failure.get();
+    // Build on the calling worker, only adding to the ontology is serialized
+    Set<OWLAxiom> axioms = new HashSet<>();
+    Node rdfType = RDF.type.asNode();
+    Node rdfsClass = RDFS.Class.asNode();
+    for (Triple t : batch) {
+      Node s = t.getSubject();
+      Node p = t.getPredicate();
+      Node o = t.getObject();
+      if (p.equals(rdfType)) {
+        if (o.equals(rdfsClass)) {
+          axioms.add(factory.getOWLDeclarationAxiom(owlClass(s)));
+        } else {
+          OWLNamedIndividual sub = individual(s);
+          axioms.add(factory.getOWLDeclarationAxiom(sub));
+          axioms.add(factory.getOWLClassAssertionAxiom(owlClass(o), sub));
+        }
+        continue;
+      }
+      OWLNamedIndividual sub = individual(s);
+      axioms.add(factory.getOWLDeclarationAxiom(sub));
+      OWLDataProperty dataProp = dataProps.get(p);
+      if (dataProp != null) {
+        axioms.add(factory.getOWLDataPropertyAssertionAxiom(dataProp, sub, literal(o)));
+      } else {
+        OWLNamedIndividual obj = individual(o);
+        axioms.add(factory.getOWLDeclarationAxiom(obj));
+        axioms.add(factory.getOWLObjectPropertyAssertionAxiom(objectProperty(p), sub, obj));
+      }
+    }
+    queue.put(axioms);
+  }
+
+  public void finish() throws Exception {
+    queue.put(END);
+    applier.join();
+    if (failure.get() != null) throw failure.get();
+  }
+
+  /**
+   * @return long - number of axioms added to the ontology so far.
+   */
+  public long getAxiomsAdded() { return added; }
+
+  private OWLNamedIndividual individual(Node node) {
+    return factory.getOWLNamedIndividual(IRI.create(node.getURI()));
+  }
+
+  private OWLClass owlClass(Node node) {
+    return classes.computeIfAbsent(node, n -> factory.getOWLClass(IRI.create(n.getURI())));
+  }
+
+  private OWLObjectProperty objectProperty(Node node) {
+    OWLObjectProperty prop = objectProps.get(node);
+    // Not a column, e.g. a triple from a custom processor
+    return prop != null ? prop : factory.getOWLObjectProperty(IRI.create(node.getURI()));
+  }
+
+  private OWLLiteral literal(Node node) {
+    OWLDatatype type = datatypes.computeIfAbsent(node.getLiteralDatatypeURI(),
+                                                 uri -> factory.getOWLDatatype(IRI.create(uri)));
+    return factory.getOWLLiteral(node.getLiteralLexicalForm(), type);
+  }
+
+  private void apply() {
+    boolean done = false;
+    try {
+      Set<OWLAxiom> chunk = new HashSet<>(declarations);
+      while (!done) {
+        Set<OWLAxiom> axioms = queue.take();
+        if (axioms == END) {
+          done = true;
+        } else {
+          chunk.addAll(axioms);
+        }
+        if (chunk.size() >= APPLY_SIZE || (done && !chunk.isEmpty())) {
+          addAxioms(chunk);
+          chunk = new HashSet<>();
+        }
+      }
+    } catch (Throwable e) {
+      // Errors such as running out of heap must not stop the draining either
+      failure.compareAndSet(null, e instanceof Exception ? (Exception) e : new Exception("Applying axioms failed: " + e, e));
+      // Keep draining so workers never block on a full queue
+      while (!done) {
+        try {
+          done = (queue.take() == END);
+        } catch (InterruptedException ie) {
+          return;
+        }
+      }
+    }
+  }
+
+  private void addAxioms(Set<OWLAxiom> chunk) throws Exception {
+    ChangeApplied[] status = new ChangeApplied[1];
+    if (onSwingThread) {
+      SwingUtilities.invokeAndWait(() -> status[0] = manager.addAxioms(ontology, chunk));
+    } else {
+      status[0] = manager.addAxioms(ontology, chunk);
+    }
+    if (status[0] == ChangeApplied.UNSUCCESSFULLY) {
+      throw new Exception("Failed to add new axioms");
+    }
+    added += chunk.size();
+  }
+}
@@ -0,0 +1,182 @@
+/**
+ * <h1>ParallelNTriplesWriter.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Writes a finished graph as N-Triples on several threads. N-Triples
+ * has no header and one statement per line, so the subjects can be
+ * split into partitions, each partition written to its own part file,
+ * and the parts joined into the output without looking at their
+ * contents.
+ * <p>
+ * Subjects are partitioned by hash and every thread scans the whole
+ * graph, keeping its own subjects. Scanning is cheap next to
+ * formatting, and it avoids listing the distinct subjects up front,
+ * which would have to be done by one thread.
+ * <p>
+ * Gzip members can be concatenated as well, so with compression each
+ * part is compressed on its own thread too.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Jena imports
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.apache.jena.util.iterator.ExtendedIterator;
+
+/**
+ * Multithreaded N-Triples writer for an in-memory graph.
+ */
+class ParallelNTriplesWriter {
+
+  private final Graph graph;
+  private final int threads;
+  private final ExecutorService service;
+
+  /**
+   * @param graph Graph to write. It must not be modified while writing.
+   * @param threads Number of writer threads, and of part files.
+   */
+  ParallelNTriplesWriter(Graph graph, int threads) {
+    this(graph, threads, null);
+  }
+
+  /**
+   * @param graph Graph to write. It must not be modified while writing.
+   * @param threads Number of writer threads, and of part files.
+   * @param service Executor running at least threads tasks at once, left
+   *                running after writing, or null to use a pool of its own.
+   */
+  ParallelNTriplesWriter(Graph graph, int threads, ExecutorService service) {
+    if (threads <= 0) throw new IllegalArgumentException("Threads must be a positive integer");
+    this.graph = graph;
+    this.threads = threads;
+    this.service = service;
+  }
+
+  /**
+   * Write the graph to a file. Part files are created next to the
+   * output, so joining them does not cross file systems.
+   *
+   * @param outFilePath Path to the output file.
+   * @param gzip Compress the output with gzip.
+   *
+   * @return long - size of the output file in bytes.
+   */
+  long write(String outFilePath, boolean gzip) throws IOException {
+    File output = new File(outFilePath).getAbsoluteFile();
+    int parts = threads;
+    List<File> partFiles = new ArrayList<>();
+    ExecutorService service = (this.service != null) ? this.service : Executors.newFixedThreadPool(parts);
+    List<Future<?>> futures = new ArrayList<>();
+    try {
+      for (int i = 0; i < parts; i++) {
+        int partition = i;
+        File part = File.createTempFile(output.getName() + ".", ".part", output.getParentFile());
+        partFiles.add(part);
+        futures.add(service.submit(() -> {
+          writePart(partition, parts, part, gzip);
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      return concat(partFiles, output);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while writing " + outFilePath);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      throw new IOException("Failed to write " + outFilePath + ": " + cause.getMessage(), cause);
+    } finally {
+      // After a failure, let the other parts end before deleting them
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (Exception ignored) {
+        }
+      }
+      if (service != this.service) service.shutdownNow();
+      for (File part : partFiles) {
+        part.delete();
+      }
+    }
+  }
+
+  /**
+   * Write the triples of every subject in one partition.
+   */
+  private void writePart(int partition, int parts, File part, boolean gzip) throws IOException {
+    try (OutputStream out = RdfOutput.wrap(new FileOutputStream(part), gzip)) {
+      StreamRDF writer = StreamRDFWriter.getWriterStream(out, Lang.NTRIPLES);
+      writer.start();
+      ExtendedIterator<Triple> it = graph.find(Node.ANY, Node.ANY, Node.ANY);
+      try {
+        // Triples of a subject usually come together, so its partition is reused
+        Node last = null;
+        boolean mine = false;
+        while (it.hasNext()) {
+          Triple t = it.next();
+          if (t.getSubject() != last) {
+            last = t.getSubject();
+            mine = partitionOf(last, parts) == partition;
+          }
+          if (mine) writer.triple(t);
+        }
+      } finally {
+        it.close();
+      }
+      writer.finish();
+    }
+  }
+
+  /**
+   * @return int - partition of a subject, spread by the golden ratio.
+   */
+  static int partitionOf(Node subject, int parts) {
+    return (int) (((subject.hashCode() * 0x9e3779b9L) & 0xffffffffL) * parts >>> 32);
+  }
+
+  /**
+   * Join the part files, in order, into the output. transferTo lets the
+   * OS copy the bytes without moving them through the Java heap.
+   *
+   * @return long - size of the output in bytes.
+   */
+  private static long concat(List<File> parts, File output) throws IOException {
+    long written = 0;
+    try (FileChannel out = FileChannel.open(output.toPath(), StandardOpenOption.CREATE,
+                                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      for (File part : parts) {
+        try (FileChannel in = FileChannel.open(part.toPath(), StandardOpenOption.READ)) {
+          long size = in.size();
+          long pos = 0;
+          // transferTo may copy less than asked for
+          while (pos < size) {
+            pos += in.transferTo(pos, size - pos, out);
+          }
+          written += size;
+        }
+        Files.delete(part.toPath());
+      }
+    }
+    return written;
+  }
+}
@@ -0,0 +1,72 @@
+/**
+ * <h1>ProgressListener.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Callback for following a running conversion. The counters of the
+ * conversion are updated per batch, and a timer thread samples them
+ * at a fixed interval to notify the listener, so reporting adds no
+ * work for each row.
+ */
+package csvtordf.main;
+
+/**
+ * Interface for receiving periodic progress of a conversion.
+ */
+public interface ProgressListener {
+
+  /**
+   * Called from the progress timer thread at the configured interval,
+   * and once more when the conversion completes.
+   *
+   * @param progress Snapshot of the conversion.
+   */
+  void progress(Progress progress);
+
+  /**
+   * Snapshot of a conversion in progress.
+   */
+  final class Progress {
+    public final long bytesRead;
+    public final long totalBytes;
+    public final long rows;
+    public final long triples;
+    public final double rowsPerSecond;  // over the last interval
+    public final double bytesPerSecond; // since the start
+    public final long etaMillis;        // -1 if not known yet
+    public final boolean done;
+
+    Progress(long bytesRead, long totalBytes, long rows, long triples, double rowsPerSecond,
+             double bytesPerSecond, long etaMillis, boolean done) {
+      this.bytesRead = bytesRead;
+      this.totalBytes = totalBytes;
+      this.rows = rows;
+      this.triples = triples;
+      this.rowsPerSecond = rowsPerSecond;
+      this.bytesPerSecond = bytesPerSecond;
+      this.etaMillis = etaMillis;
+      this.done = done;
+    }
+
+    /**
+     * @return double - fraction of the input read, between 0 and 1.
+     */
+    public double getFraction() {
+      return totalBytes > 0 ? Math.min(1.0, (double) bytesRead / totalBytes) : 0;
+    }
+
+    /**
+     * Estimate the number of rows of the whole input from the rows
+     * processed and the fraction of the input read so far.
+     *
+     * @return long - estimated total rows, exact once done, or -1 if not known yet.
+     */
+    public long getEstimatedRows() {
+      if (done) return rows;
+      double fraction = getFraction();
+      return fraction > 0 ? Math.max(rows, Math.round(rows / fraction)) : -1;
+    }
+  }
+}
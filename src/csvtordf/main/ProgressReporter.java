@@ -0,0 +1,94 @@
+/**
+ * <h1>ProgressReporter.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Drives a ProgressListener during a conversion. A daemon timer
+ * samples the counters at the configured interval, so the workers
+ * never call the listener themselves.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Samples the counters of a ConversionStats on a timer and notifies a listener.
+ */
+class ProgressReporter {
+  private final ConversionStats stats;
+  private final long totalBytes;
+  private final ProgressListener listener;
+  private final long intervalMillis;
+  private final long startTime = System.nanoTime();
+  private Timer timer;
+
+  // Previous sample, guarded by this
+  private long lastTime = startTime;
+  private long lastRows = 0;
+
+  /**
+   * @param stats Counters of the running conversion.
+   * @param totalBytes Size of the input file.
+   * @param listener Listener to notify.
+   * @param intervalMillis Time between notifications.
+   */
+  ProgressReporter(ConversionStats stats, long totalBytes, ProgressListener listener, long intervalMillis) {
+    this.stats = stats;
+    this.totalBytes = totalBytes;
+    this.listener = listener;
+    this.intervalMillis = intervalMillis;
+  }
+
+  void start() {
+    timer = new Timer("csvtordf-progress", true);
+    timer.scheduleAtFixedRate(new TimerTask() {
+      public void run() {
+        report(false);
+      }
+    }, intervalMillis, intervalMillis);
+  }
+
+  /**
+   * Stop sampling. Called whether or not the conversion succeeded.
+   */
+  void stop() {
+    timer.cancel();
+  }
+
+  /**
+   * Send the final notification of a finished conversion.
+   */
+  void complete() {
+    report(true);
+  }
+
+  private synchronized void report(boolean done) {
+    long now = System.nanoTime();
+    long bytes = stats.getBytesRead();
+    long rows = stats.getRows();
+    // The final notification reports the average over the whole conversion
+    long since = done ? startTime : lastTime;
+    long sinceRows = done ? 0 : lastRows;
+    double rowsPerSecond = now > since ? (rows - sinceRows) * 1e9 / (now - since) : 0;
+    double bytesPerSecond = now > startTime ? bytes * 1e9 / (now - startTime) : 0;
+    long eta = -1;
+    if (done) {
+      eta = 0;
+    } else if (bytesPerSecond > 0 && totalBytes > 0) {
+      eta = (long) (Math.max(0, totalBytes - bytes) * 1000 / bytesPerSecond);
+    }
+    lastTime = now;
+    lastRows = rows;
+    try {
+      listener.progress(new ProgressListener.Progress(bytes, totalBytes, rows, stats.getTriples(),
+                                                      rowsPerSecond, bytesPerSecond, eta, done));
+    } catch (RuntimeException e) {
+      // A failing listener must not stop the timer or the conversion
+      System.err.println("Progress listener failed: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,33 @@
+/**
+ * <h1>PropertyMetadata.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Settings of one CSV column: whether its cells become literals or
+ * resources, their datatype or class, whether the column is skipped
+ * or used to label the row resources, and whether absolute http(s)
+ * IRIs in a resource column are used as they are.
+ */
+package csvtordf.main;
+
+// Jena imports
+import org.apache.jena.datatypes.RDFDatatype;
+
+class PropertyMetadata {
+  public final boolean isLiteral;
+  public final RDFDatatype literalType;
+  public final String objectType;
+  public boolean isSkipped;
+  public boolean useAsLabel;
+  public boolean keepIris;
+  public PropertyMetadata (boolean isLiteral, RDFDatatype literalType, String objectType) {
+    this.isLiteral = isLiteral;
+    this.literalType = literalType;
+    this.objectType = objectType;
+    this.isSkipped = false;
+    this.useAsLabel = false;
+    this.keepIris = false;
+  }
+}
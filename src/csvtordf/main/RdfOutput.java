@@ -0,0 +1,138 @@
+/**
+ * <h1>RdfOutput.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Output formats for converted RDF. RDF/XML stays the default, but
+ * N-Triples, N-Quads and especially binary RDF Thrift are written
+ * much faster and are quicker for downstream tools to load.
+ * <p>
+ * Any format can be gzip compressed on the fly, trading some CPU
+ * for a fraction of the disk I/O.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.io.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+// Jena imports
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFWriter;
+
+/**
+ * Output format names and output streams.
+ */
+class RdfOutput {
+
+  static final String GZIP_SUFFIX = ".gz";
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  // Names accepted on the command line, in the order shown in the help
+  private static final Map<String, RDFFormat> FORMATS = new LinkedHashMap<>();
+  static {
+    FORMATS.put("rdfxml", RDFFormat.RDFXML_ABBREV);
+    FORMATS.put("rdfxml-plain", RDFFormat.RDFXML_PLAIN);
+    FORMATS.put("ntriples", RDFFormat.NTRIPLES);
+    FORMATS.put("nquads", RDFFormat.NQUADS);
+    FORMATS.put("turtle", RDFFormat.TURTLE);
+    FORMATS.put("thrift", RDFFormat.RDF_THRIFT);
+  }
+
+  private RdfOutput() {}
+
+  /**
+   * @return String - accepted format names, comma separated.
+   */
+  static String formatNames() {
+    return String.join(", ", FORMATS.keySet());
+  }
+
+  /**
+   * Look up a format by its command line name.
+   *
+   * @param name Format name, e.g. "thrift".
+   *
+   * @return RDFFormat - the format.
+   */
+  static RDFFormat format(String name) {
+    RDFFormat format = FORMATS.get(name.toLowerCase());
+    if (format == null) {
+      throw new IllegalArgumentException("Unknown format " + name + ", expected one of " + formatNames());
+    }
+    return format;
+  }
+
+  /**
+   * Pick a format from the extension of an output file, ignoring a
+   * trailing ".gz". Unknown extensions are written as RDF/XML.
+   *
+   * @param path Output file path.
+   *
+   * @return RDFFormat - format matching the extension.
+   */
+  static RDFFormat formatForPath(String path) {
+    String name = path.toLowerCase();
+    if (name.endsWith(GZIP_SUFFIX)) name = name.substring(0, name.length() - GZIP_SUFFIX.length());
+    if (name.endsWith(".nt")) return RDFFormat.NTRIPLES;
+    if (name.endsWith(".nq")) return RDFFormat.NQUADS;
+    if (name.endsWith(".ttl")) return RDFFormat.TURTLE;
+    if (name.endsWith(".trdf") || name.endsWith(".rt")) return RDFFormat.RDF_THRIFT;
+    return RDFFormat.RDFXML_ABBREV;
+  }
+
+  /**
+   * @return boolean - true if the path names a gzip file.
+   */
+  static boolean isGzip(String path) {
+    return path.toLowerCase().endsWith(GZIP_SUFFIX);
+  }
+
+  /**
+   * @return boolean - true if the format is binary rather than text.
+   */
+  static boolean isBinary(RDFFormat format) {
+    return format.getLang().equals(Lang.RDFTHRIFT);
+  }
+
+  /**
+   * @return boolean - true if the language can be written as triples arrive.
+   */
+  static boolean streamable(Lang lang) {
+    return lang.equals(Lang.RDFXML) || StreamRDFWriter.registered(lang);
+  }
+
+  /**
+   * Create a writer sending triples to a stream as they arrive. RDF/XML
+   * is written grouped by subject, by RdfXmlStreamWriter.
+   *
+   * @param out Output stream.
+   * @param lang Streamable language.
+   *
+   * @return StreamRDF - the writer.
+   */
+  static StreamRDF streamWriter(OutputStream out, Lang lang) {
+    if (lang.equals(Lang.RDFXML)) return new RdfXmlStreamWriter(out);
+    return StreamRDFWriter.getWriterStream(out, lang);
+  }
+
+  /**
+   * Wrap a stream for writing RDF. Closing the returned stream finishes
+   * the gzip trailer, if any, and closes the underlying stream.
+   *
+   * @param out Underlying stream.
+   * @param gzip Compress the output with gzip.
+   *
+   * @return OutputStream - buffered, and compressed if asked to.
+   */
+  static OutputStream wrap(OutputStream out, boolean gzip) throws IOException {
+    if (gzip) return new GZIPOutputStream(out, BUFFER_SIZE);
+    return new BufferedOutputStream(out, BUFFER_SIZE);
+  }
+}
@@ -0,0 +1,231 @@
+/**
+ * <h1>RdfXmlStreamWriter.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Writes plain RDF/XML in a single pass as triples arrive. Consecutive
+ * triples with the same subject share one rdf:Description, so every
+ * CSV row becomes one element, without looking at the rest of the graph
+ * the way the RDF/XML-ABBREV writer does.
+ * <p>
+ * Only the namespaces are kept in memory. Properties in a namespace that
+ * was not declared before the first triple declare it on their element.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Jena imports
+import org.apache.jena.atlas.RuntimeIOException;
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.impl.Util;
+import org.apache.jena.riot.RiotException;
+import org.apache.jena.riot.out.NodeFmtLib;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.shared.InvalidPropertyURIException;
+import org.apache.jena.sparql.core.Quad;
+import org.apache.jena.vocabulary.RDF;
+
+/**
+ * Streaming RDF/XML writer grouping consecutive triples by subject.
+ * Not thread safe, callers writing from several threads must keep the
+ * triples of a subject together themselves, as StreamSink does.
+ */
+public class RdfXmlStreamWriter implements StreamRDF {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+  // Predicates whose element names are remembered, CSV columns stay well below this
+  private static final int MAX_CACHED_PREDICATES = 4096;
+  // Prefix of namespaces declared on the property element itself
+  private static final String LOCAL_PREFIX = "ns0";
+
+  private final Writer out;
+  // prefix -> namespace until the header is written
+  private final Map<String, String> prefixes = new LinkedHashMap<>();
+  // namespace -> prefix, declared in the header
+  private final Map<String, String> namespaces = new HashMap<>();
+  // predicate -> element name and namespace declaration
+  private final Map<Node, String[]> elements = new HashMap<>();
+  private boolean headerWritten = false;
+  private Node subject = null;
+
+  /**
+   * @param out Stream to write UTF-8 RDF/XML to. It is flushed, not closed, by finish().
+   */
+  public RdfXmlStreamWriter(OutputStream out) {
+    this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    prefixes.put("rdf", RDF.getURI());
+  }
+
+  public void start() {}
+
+  public void base(String base) {}
+
+  public void prefix(String prefix, String iri) {
+    // Namespaces arriving after the header are declared where used instead
+    if (headerWritten || !validPrefix(prefix) || prefixes.containsKey(prefix) || prefixes.containsValue(iri)) return;
+    prefixes.put(prefix, iri);
+  }
+
+  public void triple(Triple triple) {
+    try {
+      if (!headerWritten) writeHeader();
+      Node s = triple.getSubject();
+      if (!s.equals(subject)) {
+        if (subject != null) out.write("  </rdf:Description>\n");
+        subject = s;
+        out.write("  <rdf:Description ");
+        out.write(nodeAttr(s, "rdf:about"));
+        out.write(">\n");
+      }
+      writeProperty(triple.getPredicate(), triple.getObject());
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+  }
+
+  public void quad(Quad quad) {
+    // RDF/XML has no graphs, quads are written as triples
+    triple(quad.asTriple());
+  }
+
+  public void finish() {
+    try {
+      if (!headerWritten) writeHeader();
+      if (subject != null) out.write("  </rdf:Description>\n");
+      subject = null;
+      out.write("</rdf:RDF>\n");
+      out.flush();
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+  }
+
+  private void writeHeader() throws IOException {
+    out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    out.write("<rdf:RDF");
+    for (Map.Entry<String, String> e : prefixes.entrySet()) {
+      out.write("\n    xmlns:");
+      out.write(e.getKey());
+      out.write("=\"");
+      out.write(escape(e.getValue(), true));
+      out.write("\"");
+      namespaces.put(e.getValue(), e.getKey());
+    }
+    out.write(">\n");
+    headerWritten = true;
+  }
+
+  private void writeProperty(Node predicate, Node object) throws IOException {
+    String[] element = elements.get(predicate);
+    if (element == null) {
+      element = element(predicate);
+      if (elements.size() < MAX_CACHED_PREDICATES) elements.put(predicate, element);
+    }
+    out.write("    <");
+    out.write(element[0]);
+    out.write(element[1]);
+    if (object.isLiteral()) {
+      String lang = object.getLiteralLanguage();
+      String datatype = object.getLiteralDatatypeURI();
+      if (lang != null && !lang.isEmpty()) {
+        out.write(" xml:lang=\"");
+        out.write(escape(lang, true));
+        out.write("\"");
+      } else if (datatype != null && !datatype.equals(XSDDatatype.XSDstring.getURI())) {
+        out.write(" rdf:datatype=\"");
+        out.write(escape(datatype, true));
+        out.write("\"");
+      }
+      out.write(">");
+      out.write(escape(object.getLiteralLexicalForm(), false));
+      out.write("</");
+      out.write(element[0]);
+      out.write(">\n");
+    } else {
+      out.write(" ");
+      out.write(nodeAttr(object, "rdf:resource"));
+      out.write("/>\n");
+    }
+  }
+
+  /**
+   * Split a predicate into an element name, and a namespace declaration
+   * if its namespace is not declared in the header.
+   *
+   * @return String[] - element name and declaration, which may be empty.
+   */
+  private String[] element(Node predicate) {
+    if (!predicate.isURI()) throw new InvalidPropertyURIException(predicate.toString());
+    String uri = predicate.getURI();
+    int split = Util.splitNamespaceXML(uri);
+    if (split <= 0 || split >= uri.length()) throw new InvalidPropertyURIException(uri);
+    String ns = uri.substring(0, split);
+    String local = uri.substring(split);
+    String prefix = namespaces.get(ns);
+    if (prefix != null) return new String[]{prefix + ":" + local, ""};
+    return new String[]{LOCAL_PREFIX + ":" + local, " xmlns:" + LOCAL_PREFIX + "=\"" + escape(ns, true) + "\""};
+  }
+
+  /**
+   * @return String - attribute naming a resource, rdf:nodeID for blank nodes.
+   */
+  private static String nodeAttr(Node node, String uriAttr) {
+    if (node.isURI()) return uriAttr + "=\"" + escape(node.getURI(), true) + "\"";
+    if (node.isBlank()) return "rdf:nodeID=\"" + NodeFmtLib.encodeBNodeLabel(node.getBlankNodeLabel()) + "\"";
+    throw new RiotException("RDF/XML cannot write " + node + " as a resource");
+  }
+
+  /**
+   * @return boolean - true for prefixes usable as an XML namespace prefix.
+   */
+  private static boolean validPrefix(String prefix) {
+    if (prefix.isEmpty() || prefix.toLowerCase().startsWith("xml") || prefix.equals(LOCAL_PREFIX)) return false;
+    char first = prefix.charAt(0);
+    if (!Character.isLetter(first) && first != '_') return false;
+    for (int i = 1; i < prefix.length(); i++) {
+      char c = prefix.charAt(i);
+      if (!Character.isLetterOrDigit(c) && c != '_' && c != '-' && c != '.') return false;
+    }
+    return true;
+  }
+
+  /**
+   * Escape text for XML content or a double quoted attribute.
+   */
+  private static String escape(String s, boolean attr) {
+    StringBuilder sb = null;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      String rep;
+      switch (c) {
+        case '&': rep = "&amp;"; break;
+        case '<': rep = "&lt;"; break;
+        case '>': rep = "&gt;"; break;
+        case '\r': rep = "&#xD;"; break;
+        case '"': rep = attr ? "&quot;" : null; break;
+        case '\n': rep = attr ? "&#xA;" : null; break;
+        case '\t': rep = attr ? "&#x9;" : null; break;
+        default:
+          if (c < 0x20) throw new RiotException("RDF/XML cannot hold control character " + (int) c + " in " + s);
+          rep = null;
+      }
+      if (rep == null) {
+        if (sb != null) sb.append(c);
+      } else {
+        if (sb == null) sb = new StringBuilder(s.length() + 16).append(s, 0, i);
+        sb.append(rep);
+      }
+    }
+    return sb == null ? s : sb.toString();
+  }
+}
@@ -0,0 +1,132 @@
+/**
+ * <h1>RingBufferSink.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Sink handing batches to one writer thread through a TripleRingBuffer.
+ * Only the writer adds to the graph, so workers never take a graph lock
+ * and are only held up when the ring is full.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Jena imports
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
+
+/**
+ * Sink handing batches to a single graph writer thread through a TripleRingBuffer.
+ */
+class RingBufferSink implements TripleSink {
+
+  // Batches buffered between the workers and the writer
+  static final int CAPACITY = 1024;
+  // Longest pause of a waiting producer or writer
+  private static final long MAX_PARK_NANOS = 100000;
+
+  private final Graph graph;
+  private final ConversionStats stats;
+  private final TripleRingBuffer ring = new TripleRingBuffer(CAPACITY);
+  private final AtomicReference<Exception> failure = new AtomicReference<>();
+  private final LongAdder producerWaits = new LongAdder();
+  private final LongAdder lockWait = new LongAdder();
+  private volatile boolean done = false;
+  private Thread writer;
+
+  // Updated by the writer thread only
+  private long writerWaits = 0;
+  private long samples = 0;
+  private long occupancySum = 0;
+
+  /**
+   * @param graph Graph to add the triples to. Only the writer thread adds to it.
+   * @param stats Stats to report the queue occupancy to on finish, or null.
+   */
+  public RingBufferSink(Graph graph, ConversionStats stats) {
+    this.graph = graph;
+    this.stats = stats;
+  }
+
+  public void start() {
+    writer = new Thread(this::write, "csvtordf-graph-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  public void accept(Triple[] batch) throws Exception {
+    if (failure.get() != null) throw failure.get();
+    if (ring.offer(batch)) return;
+    // Ring full, the time until there is room counts as lock wait
+    long waitStart = System.nanoTime();
+    int spins = 0;
+    do {
+      if (failure.get() != null) throw failure.get();
+      producerWaits.increment();
+      spins = backoff(spins);
+    } while (!ring.offer(batch));
+    lockWait.add(System.nanoTime() - waitStart);
+  }
+
+  public void finish() throws Exception {
+    done = true;
+    writer.join();
+    if (stats != null) {
+      stats.recordWriterQueue(ring.capacity(), samples > 0 ? (double) occupancySum / samples : 0,
+                              producerWaits.sum(), writerWaits);
+    }
+    if (failure.get() != null) throw failure.get();
+  }
+
+  public long getLockWaitNanos() { return lockWait.sum(); }
+
+  private void write() {
+    int spins = 0;
+    try {
+      while (true) {
+        // Read before polling, once it is set every batch has been offered
+        boolean finished = done;
+        int occupancy = ring.size();
+        Triple[] batch = ring.poll();
+        if (batch == null) {
+          if (finished) break;
+          writerWaits++;
+          spins = backoff(spins);
+          continue;
+        }
+        spins = 0;
+        samples++;
+        occupancySum += occupancy;
+        for (Triple t : batch) {
+          graph.add(t);
+        }
+      }
+    } catch (Throwable e) {
+      // Errors such as running out of heap must not stop the draining either
+      failure.compareAndSet(null, e instanceof Exception ? (Exception) e : new Exception("Graph writer failed: " + e, e));
+      // Keep draining so producers never wait on a full buffer
+      while (!done) {
+        if (ring.poll() == null) LockSupport.parkNanos(MAX_PARK_NANOS);
+      }
+    }
+  }
+
+  /**
+   * Wait a little longer each time: yield first, then park for growing times.
+   *
+   * @return int - updated wait count.
+   */
+  private static int backoff(int spins) {
+    if (spins < 64) {
+      Thread.yield();
+    } else {
+      LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1000L << Math.min(spins - 64, 7)));
+    }
+    return spins + 1;
+  }
+}
@@ -0,0 +1,178 @@
+/**
+ * <h1>ShardedGraph.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * In-memory graph split into shards by subject, each shard guarded by
+ * its own lock. Workers inserting rows with different subjects then
+ * mostly take different locks, instead of all queueing on the single
+ * model-wide WRITE lock, so inserting keeps scaling with threads.
+ * <p>
+ * All triples of a subject live in one shard, so finding by subject
+ * only looks at that shard. Other patterns look at every shard in turn.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Jena imports
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.GraphEvents;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.graph.impl.GraphBase;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.util.iterator.ExtendedIterator;
+import org.apache.jena.util.iterator.NullIterator;
+
+/**
+ * Graph made of subject-hash partitioned in-memory graphs with striped locks.
+ * Adding is thread safe. Reading while another thread adds is not, just as
+ * with a plain in-memory graph.
+ */
+class ShardedGraph extends GraphBase {
+
+  private final Graph[] shards;
+  private final ReentrantLock[] locks;
+
+  /**
+   * @param n Number of shards.
+   */
+  ShardedGraph(int n) {
+    this(n, GraphFactory::createGraphMem);
+  }
+
+  /**
+   * @param n Number of shards.
+   * @param factory Creates the graph of each shard.
+   */
+  ShardedGraph(int n, Supplier<Graph> factory) {
+    if (n <= 0) throw new IllegalArgumentException("Shards must be a positive integer");
+    shards = new Graph[n];
+    locks = new ReentrantLock[n];
+    for (int i = 0; i < n; i++) {
+      shards[i] = factory.get();
+      locks[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * @return int - number of shards.
+   */
+  int getShardCount() {
+    return shards.length;
+  }
+
+  /**
+   * @return int - shard holding a subject, spread by the golden ratio.
+   */
+  int shardOf(Node subject) {
+    return (int) (((subject.hashCode() * 0x9e3779b9L) & 0xffffffffL) * shards.length >>> 32);
+  }
+
+  /**
+   * Add a batch of triples, taking each shard lock at most once per run
+   * of triples with the same shard. Rows produce their triples together,
+   * so a batch usually takes one lock per row. Listeners are not notified.
+   *
+   * @param batch Triples to add.
+   * @param lockWait Time spent waiting on shard locks is added here.
+   */
+  void addAll(Triple[] batch, LongAdder lockWait) {
+    int i = 0;
+    while (i < batch.length) {
+      int shard = shardOf(batch[i].getSubject());
+      int end = i + 1;
+      while (end < batch.length && shardOf(batch[end].getSubject()) == shard) end++;
+      ReentrantLock lock = locks[shard];
+      if (!lock.tryLock()) {
+        long waitStart = System.nanoTime();
+        lock.lock();
+        lockWait.add(System.nanoTime() - waitStart);
+      }
+      try {
+        Graph graph = shards[shard];
+        for (int j = i; j < end; j++) {
+          graph.add(batch[j]);
+        }
+      } finally {
+        lock.unlock();
+      }
+      i = end;
+    }
+  }
+
+  @Override
+  public void performAdd(Triple t) {
+    int shard = shardOf(t.getSubject());
+    locks[shard].lock();
+    try {
+      shards[shard].add(t);
+    } finally {
+      locks[shard].unlock();
+    }
+  }
+
+  @Override
+  public void performDelete(Triple t) {
+    int shard = shardOf(t.getSubject());
+    locks[shard].lock();
+    try {
+      shards[shard].delete(t);
+    } finally {
+      locks[shard].unlock();
+    }
+  }
+
+  @Override
+  protected ExtendedIterator<Triple> graphBaseFind(Triple pattern) {
+    Node s = pattern.getMatchSubject();
+    if (s != null) {
+      return shards[shardOf(s)].find(pattern);
+    }
+    ExtendedIterator<Triple> it = NullIterator.instance();
+    for (Graph shard : shards) {
+      it = it.andThen(shard.find(pattern));
+    }
+    return it;
+  }
+
+  @Override
+  protected boolean graphBaseContains(Triple t) {
+    Node s = t.getMatchSubject();
+    if (s != null) {
+      return shards[shardOf(s)].contains(t);
+    }
+    for (Graph shard : shards) {
+      if (shard.contains(t)) return true;
+    }
+    return false;
+  }
+
+  @Override
+  protected int graphBaseSize() {
+    long size = 0;
+    for (Graph shard : shards) {
+      size += shard.size();
+    }
+    return (int) Math.min(Integer.MAX_VALUE, size);
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < shards.length; i++) {
+      locks[i].lock();
+      try {
+        shards[i].clear();
+      } finally {
+        locks[i].unlock();
+      }
+    }
+    getEventManager().notifyEvent(this, GraphEvents.removeAll);
+  }
+}
@@ -0,0 +1,40 @@
+/**
+ * <h1>ShardedSink.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Sink of conversions into a ShardedGraph. Workers only lock the
+ * shards their triples go to, so batches of different subjects are
+ * added in parallel.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.concurrent.atomic.LongAdder;
+
+// Jena imports
+import org.apache.jena.graph.Triple;
+
+/**
+ * Sink inserting into a ShardedGraph without the model-wide lock.
+ */
+class ShardedSink implements TripleSink {
+  private final ShardedGraph graph;
+  private final LongAdder lockWait = new LongAdder();
+
+  public ShardedSink(ShardedGraph graph) {
+    this.graph = graph;
+  }
+
+  public void start() {}
+
+  public void accept(Triple[] batch) {
+    graph.addAll(batch, lockWait);
+  }
+
+  public void finish() {}
+
+  public long getLockWaitNanos() { return lockWait.sum(); }
+}
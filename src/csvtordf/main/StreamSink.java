@@ -0,0 +1,55 @@
+/**
+ * <h1>StreamSink.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Sink of the streaming conversion modes, writing every batch to a
+ * StreamRDF as soon as it is built.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.concurrent.atomic.LongAdder;
+
+// Jena imports
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDF;
+
+/**
+ * Sink passing triples straight through to a Jena StreamRDF, such as
+ * a streaming N-Triples writer. Nothing is retained in memory.
+ */
+class StreamSink implements TripleSink {
+  private final StreamRDF stream;
+  private final String prefix;
+  private final LongAdder lockWait = new LongAdder();
+
+  public StreamSink(StreamRDF stream, String prefix) {
+    this.stream = stream;
+    this.prefix = prefix;
+  }
+
+  public void start() {
+    stream.start();
+    stream.prefix("csv", prefix);
+  }
+
+  public void accept(Triple[] batch) {
+    // Writers are not thread safe, keep each batch contiguous in the output
+    long waitStart = System.nanoTime();
+    synchronized (stream) {
+      lockWait.add(System.nanoTime() - waitStart);
+      for (Triple t : batch) {
+        stream.triple(t);
+      }
+    }
+  }
+
+  public void finish() {
+    stream.finish();
+  }
+
+  public long getLockWaitNanos() { return lockWait.sum(); }
+}
@@ -0,0 +1,109 @@
+/**
+ * <h1>TdbSink.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Sink loading triples into a disk-backed TDB dataset. TDB only
+ * allows one writer, and its transactions are bound to the thread
+ * that began them, so workers hand their batches to a bounded
+ * queue drained by a single loader thread. The loader commits in
+ * large transactional batches, keeping heap use independent of
+ * the size of the input.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+// Jena imports
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.ReadWrite;
+
+/**
+ * Sink loading triples into a TDB dataset from a single loader thread.
+ */
+class TdbSink implements TripleSink {
+
+  // Triples added per write transaction
+  static final int COMMIT_SIZE = 200000;
+  // Batches waiting for the loader before workers block
+  private static final int QUEUE_CAPACITY = 64;
+  // Marks the end of input for the loader
+  private static final Triple[] END = new Triple[0];
+
+  private final Dataset dataset;
+  private final BlockingQueue<Triple[]> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final AtomicReference<Exception> failure = new AtomicReference<>();
+  private final LongAdder lockWait = new LongAdder();
+  private Thread loader;
+
+  public TdbSink(Dataset dataset) {
+    this.dataset = dataset;
+  }
+
+  public void start() {
+    loader = new Thread(this::load, "csvtordf-tdb-loader");
+    loader.setDaemon(true);
+    loader.start();
+  }
+
+  public void accept(Triple[] batch) throws Exception {
+    if (failure.get() != null) throw failure.get();
+    // Time blocked on a full queue is time the workers wait on the loader
+    long waitStart = System.nanoTime();
+    queue.put(batch);
+    lockWait.add(System.nanoTime() - waitStart);
+  }
+
+  public void finish() throws Exception {
+    queue.put(END);
+    loader.join();
+    if (failure.get() != null) throw failure.get();
+  }
+
+  public long getLockWaitNanos() { return lockWait.sum(); }
+
+  private void load() {
+    boolean done = false;
+    try {
+      while (!done) {
+        dataset.begin(ReadWrite.WRITE);
+        try {
+          Graph graph = dataset.asDatasetGraph().getDefaultGraph();
+          long added = 0;
+          while (added < COMMIT_SIZE) {
+            Triple[] batch = queue.take();
+            if (batch == END) {
+              done = true;
+              break;
+            }
+            for (Triple t : batch) {
+              graph.add(t);
+            }
+            added += batch.length;
+          }
+          dataset.commit();
+        } finally {
+          dataset.end();
+        }
+      }
+    } catch (Throwable e) {
+      // Errors such as running out of heap must not stop the draining either
+      failure.compareAndSet(null, e instanceof Exception ? (Exception) e : new Exception("TDB loader failed: " + e, e));
+      // Keep draining so workers never block on a full queue
+      while (!done) {
+        try {
+          done = (queue.take() == END);
+        } catch (InterruptedException ie) {
+          return;
+        }
+      }
+    }
+  }
+}
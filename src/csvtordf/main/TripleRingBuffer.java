@@ -0,0 +1,107 @@
+/**
+ * <h1>TripleRingBuffer.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Lock-free ring buffer of triple batches with many producers and one
+ * consumer. Workers claim a slot with a single compare-and-set, and one
+ * writer thread drains the slots in order and adds the triples to the
+ * graph, so inserting is one uncontended stream and no worker ever
+ * takes the model lock.
+ * <p>
+ * Each slot carries a sequence number telling producers when it is free
+ * and the consumer when it is filled, after D. Vyukov's bounded queue.
+ */
+package csvtordf.main;
+
+// Java imports
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Jena imports
+import org.apache.jena.graph.Triple;
+
+/**
+ * Bounded multi-producer, single-consumer queue of triple batches.
+ */
+class TripleRingBuffer {
+
+  private final int mask;
+  private final AtomicReferenceArray<Triple[]> items;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail = new AtomicLong();
+  // Only touched by the consumer
+  private long head = 0;
+
+  /**
+   * @param capacity Number of slots, rounded up to a power of two.
+   */
+  TripleRingBuffer(int capacity) {
+    if (capacity <= 0) throw new IllegalArgumentException("Capacity must be a positive integer");
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) size <<= 1;
+    mask = size - 1;
+    items = new AtomicReferenceArray<>(size);
+    sequences = new AtomicLongArray(size);
+    for (int i = 0; i < size; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * @return int - number of slots.
+   */
+  int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Add a batch if there is a free slot. Safe to call from any thread.
+   *
+   * @return boolean - false if the buffer is full.
+   */
+  boolean offer(Triple[] batch) {
+    while (true) {
+      long pos = tail.get();
+      int index = (int) pos & mask;
+      long diff = sequences.get(index) - pos;
+      if (diff == 0) {
+        if (tail.compareAndSet(pos, pos + 1)) {
+          items.lazySet(index, batch);
+          // Publishes the batch to the consumer
+          sequences.lazySet(index, pos + 1);
+          return true;
+        }
+      } else if (diff < 0) {
+        return false; // the consumer has not freed this slot yet
+      }
+      // Another producer claimed the slot first, try the next one
+    }
+  }
+
+  /**
+   * Take the next batch. Only called by the consumer thread.
+   *
+   * @return Triple[] - the batch, or null if none is ready.
+   */
+  Triple[] poll() {
+    int index = (int) head & mask;
+    if (sequences.get(index) != head + 1) return null;
+    Triple[] batch = items.get(index);
+    items.lazySet(index, null);
+    // Hands the slot back to producers one lap later
+    sequences.lazySet(index, head + mask + 1);
+    head++;
+    return batch;
+  }
+
+  /**
+   * @return int - batches claimed by producers and not yet taken, seen from the consumer.
+   */
+  int size() {
+    return (int) Math.max(0, Math.min(capacity(), tail.get() - head));
+  }
+}
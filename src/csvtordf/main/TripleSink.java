@@ -0,0 +1,49 @@
+/**
+ * <h1>TripleSink.java<h1>
+ * <p>
+ * @author Cody D'Ambrosio || cjd218 || cjd218@lehigh.edu
+ * @author Charles Inwald  || cci219 || cci219@lehigh.edu
+ * @author Paul Grocholske || pag314 || pag314@lehigh.edu
+ * <p>
+ * Destination for the triples produced while converting CSV
+ * rows. Worker threads hand each processed batch of rows to
+ * a sink, which either inserts them into a Jena Model or
+ * passes them straight through to an output stream.
+ */
+package csvtordf.main;
+
+// Jena imports
+import org.apache.jena.graph.Triple;
+
+/**
+ * Interface for receiving batches of converted triples.
+ * Implementations must be safe to call from multiple worker threads.
+ */
+public interface TripleSink {
+
+  /**
+   * Called once before any batch is accepted.
+   */
+  void start();
+
+  /**
+   * Accept a batch of triples. The sink takes ownership of the array.
+   *
+   * @param batch Triples produced from one batch of CSV rows.
+   */
+  void accept(Triple[] batch) throws Exception;
+
+  /**
+   * Called once after the last batch has been accepted.
+   */
+  void finish() throws Exception;
+
+  /**
+   * Get the total time accepting threads spent waiting on a lock, or for
+   * room in the queue of a loader thread. Adaptive batch sizing grows the
+   * batches while this is a large share of the processing time.
+   *
+   * @return long - lock wait time in nanoseconds.
+   */
+  default long getLockWaitNanos() { return 0; }
+}
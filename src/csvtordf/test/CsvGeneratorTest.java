@@ -0,0 +1,71 @@
+package csvtordf.test;
+
+import org.junit.Test;
+import csvtordf.main.CsvGenerator;
+import csvtordf.main.CsvTokenizer;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvGeneratorTest {
+
+    /**
+     * Tests that the same seed gives the same output and a different seed does not
+     */
+    @Test
+    public void deterministic() throws Exception {
+        CsvGenerator generator = new CsvGenerator();
+        generator.setRows(500);
+        generator.setCardinality(20);
+        generator.setQuotedFraction(0.3);
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        ByteArrayOutputStream other = new ByteArrayOutputStream();
+        assertEquals(generator.generate(first), first.size());
+        generator.generate(second);
+        generator.setSeed(7);
+        generator.generate(other);
+        assertArrayEquals(first.toByteArray(), second.toByteArray());
+        assertFalse(java.util.Arrays.equals(first.toByteArray(), other.toByteArray()));
+    }
+
+    /**
+     * Tests the number of rows and columns, cardinality, quoting and label uniqueness
+     */
+    @Test
+    public void shape() throws Exception {
+        CsvGenerator generator = new CsvGenerator();
+        generator.setRows(2000);
+        generator.setColumns(4);
+        generator.setCardinality(1, 5);
+        generator.setQuotedFraction(0.5);
+        generator.setLabelColumn(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator.generate(out);
+
+        BufferedReader br = new BufferedReader(new StringReader(out.toString("US-ASCII")));
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        assertArrayEquals(new String[]{"col0", "col1", "col2", "col3"}, tokenizer.split(br.readLine()));
+        Set<String> labels = new HashSet<>();
+        Set<String> categories = new HashSet<>();
+        int rows = 0;
+        int quoted = 0;
+        String line;
+        while ((line = br.readLine()) != null) {
+            assertEquals(4, tokenizer.tokenize(line));
+            labels.add(tokenizer.field(0));
+            categories.add(tokenizer.field(1));
+            if (line.indexOf('"') >= 0) quoted++;
+            rows++;
+        }
+        assertEquals(2000, rows);
+        assertEquals(2000, labels.size());
+        assertEquals(5, categories.size());
+        assertTrue(quoted > 0);
+    }
+}
@@ -1,19 +1,46 @@
 package csvtordf.test;
 
 import org.apache.jena.base.Sys;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
 import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.RDFNode;
 import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.rdf.model.StmtIterator;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.system.Txn;
 import org.junit.Test;
+import csvtordf.main.ConversionStats;
+import csvtordf.main.CsvGenerator;
 import csvtordf.main.CsvToRdf;
+import csvtordf.main.ExecutorStrategy;
+import csvtordf.main.ProgressListener;
+import csvtordf.main.TripleSink;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
 import java.lang.reflect.Field;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -145,6 +172,66 @@ public class CsvToRdfTest {
         assertTrue(Files.exists(Paths.get("testOutputFile")));
     }
 
+    /**
+     * Tests that every output format, plain or gzip compressed, reads back with all statements
+     */
+    @Test
+    public void outputModelFormat() throws IOException {
+        CsvToRdf program = new CsvToRdf();
+        program.readInputFile("samples/sample.csv", 1);
+        Model expected = program.getModel();
+
+        RDFFormat[] formats = {RDFFormat.RDFXML_ABBREV, RDFFormat.NTRIPLES, RDFFormat.NQUADS,
+                               RDFFormat.TURTLE, RDFFormat.RDF_THRIFT};
+        for (RDFFormat format : formats) {
+            for (boolean gzip : new boolean[]{false, true}) {
+                File file = File.createTempFile("output", gzip ? ".gz" : ".out");
+                file.deleteOnExit();
+                program.outputModel(file.getPath(), format, gzip);
+                Model parsed = ModelFactory.createDefaultModel();
+                try (InputStream in = gzip ? new GZIPInputStream(new FileInputStream(file)) : new FileInputStream(file)) {
+                    if (format.getLang().equals(Lang.NQUADS)) {
+                        RDFDataMgr.read(DatasetFactory.wrap(parsed), in, Lang.NQUADS);
+                    } else {
+                        RDFDataMgr.read(parsed, in, format.getLang());
+                    }
+                }
+                assertEquals(expected.size(), parsed.size(), format + (gzip ? " gzip" : ""));
+            }
+        }
+    }
+
+    /**
+     * Tests that N-Triples written in parallel parts, plain or gzip compressed,
+     * hold the same lines as the single threaded writer
+     */
+    @Test
+    public void outputModelParallel() throws IOException {
+        CsvToRdf program = new CsvToRdf();
+        program.readInputFile("samples/sample.csv", 1);
+        File single = File.createTempFile("single", ".nt");
+        single.deleteOnExit();
+        program.outputModel(single.getPath(), RDFFormat.NTRIPLES, false, 1);
+        ArrayList<String> expected = new ArrayList<>(Files.readAllLines(single.toPath()));
+        expected.sort(null);
+
+        for (boolean gzip : new boolean[]{false, true}) {
+            File parallel = File.createTempFile("parallel", gzip ? ".nt.gz" : ".nt");
+            parallel.deleteOnExit();
+            program.outputModel(parallel.getPath(), RDFFormat.NTRIPLES, gzip, 4);
+            ArrayList<String> lines = new ArrayList<>();
+            try (Scanner scanner = new Scanner(gzip ? new GZIPInputStream(new FileInputStream(parallel))
+                                                    : new FileInputStream(parallel), "UTF-8")) {
+                while (scanner.hasNextLine()) lines.add(scanner.nextLine());
+            }
+            lines.sort(null);
+            assertEquals(expected, lines);
+            // No part files are left behind
+            File[] parts = parallel.getParentFile().listFiles((dir, name) -> name.startsWith(parallel.getName() + "."));
+            assertEquals(0, parts.length);
+        }
+    }
+
     /**
      * Tests that clearing the model removes all statements
      * Note: testing that skipped properties are skipped are tested for in markSkipped()
@@ -198,6 +285,72 @@ public class CsvToRdfTest {
         assertNull(program.getLastErrorMsg());
     }
 
+    /**
+     * Tests that the conversion metrics count every row and byte, sequential and memory-mapped
+     */
+    @Test
+    public void getLastStats() throws IOException {
+        long rows = Files.readAllLines(Paths.get("samples/sample.csv")).size() - 1;
+        long bytes = Files.size(Paths.get("samples/sample.csv"));
+        for (boolean mapped : new boolean[]{false, true}) {
+            CsvToRdf program = new CsvToRdf();
+            assertNull(program.getLastStats());
+            program.setMappedInput(mapped);
+            assertTrue(program.readInputFile("samples/sample.csv", 2));
+            ConversionStats stats = program.getLastStats();
+            assertEquals(rows, stats.getRows());
+            assertEquals(bytes, stats.getBytesRead());
+            assertTrue(stats.getTriples() >= program.getModel().size());
+            assertTrue(stats.getRowsPerSecond() > 0);
+            assertEquals(program.getLastExecTime(), stats.getTotalMillis());
+        }
+    }
+
+
+    /**
+     * Tests that the progress listener gets a final notification covering the whole file
+     */
+    @Test
+    public void setProgressListener() throws IOException {
+        long rows = Files.readAllLines(Paths.get("samples/sample.csv")).size() - 1;
+        CsvToRdf program = new CsvToRdf();
+        ArrayList<ProgressListener.Progress> updates = new ArrayList<>();
+        program.setProgressInterval(1);
+        program.setProgressListener(p -> {
+            synchronized (updates) { updates.add(p); }
+        });
+        assertThrows(IllegalArgumentException.class, () -> program.setProgressInterval(0));
+        assertTrue(program.readInputFile("samples/sample.csv", 2));
+        ProgressListener.Progress last;
+        synchronized (updates) { last = updates.get(updates.size() - 1); }
+        assertTrue(last.done);
+        assertEquals(rows, last.rows);
+        assertEquals(1.0, last.getFraction());
+        assertEquals(0, last.etaMillis);
+        assertEquals(rows, last.getEstimatedRows());
+        synchronized (updates) {
+            for (ProgressListener.Progress p : updates) {
+                assertTrue(p.getEstimatedRows() == -1 || p.getEstimatedRows() >= p.rows);
+            }
+        }
+    }
+
+    /**
+     * Tests that the preview holds all statements of at most the requested number of subjects
+     */
+    @Test
+    public void previewModel() {
+        CsvToRdf program = new CsvToRdf();
+        assertTrue(program.readInputFile("samples/sample.csv", 1));
+        Model preview = program.previewModel(10);
+        assertEquals(10, preview.listSubjects().toList().size());
+        assertTrue(program.getModel().containsAll(preview));
+        for (Resource subject : preview.listSubjects().toList()) {
+            assertEquals(program.getModel().listStatements(subject, null, (RDFNode) null).toList().size(),
+                    preview.listStatements(subject, null, (RDFNode) null).toList().size());
+        }
+        assertEquals(program.getModel().size(), program.previewModel(Integer.MAX_VALUE).size());
+    }
 
     @Test
     public void getLastErrorMsg() {
@@ -210,6 +363,625 @@ public class CsvToRdfTest {
         assertEquals("File not found: samples/notarealcsv.csv",program.getLastErrorMsg());
     }
 
+    /**
+     * Tests that streaming conversion writes every triple without loading the model
+     */
+    @Test
+    public void convertToStream() {
+        CsvToRdf program = new CsvToRdf();
+        program.readInputFile("samples/sample.csv", 1);
+        long modelSize = program.getModel().size();
+
+        CsvToRdf streamer = new CsvToRdf();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(streamer.convertToStream("samples/sample.csv", 2, out, Lang.NTRIPLES));
+        assertNull(streamer.getLastErrorMsg());
+        assertEquals(0, streamer.getModel().size());
+
+        Model parsed = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(parsed, new ByteArrayInputStream(out.toByteArray()), Lang.NTRIPLES);
+        assertEquals(modelSize, parsed.size());
+    }
+
+    /**
+     * Tests that a tiny batch queue still converts everything, and that a bad line
+     * fails the conversion without leaving the reader blocked on a full queue
+     */
+    @Test
+    public void setQueueCapacity() {
+        CsvToRdf program = new CsvToRdf();
+        program.readInputFile("samples/sample.csv", 1);
+        long modelSize = program.getModel().size();
+
+        CsvToRdf bounded = new CsvToRdf();
+        bounded.setQueueCapacity(1);
+        assertTrue(bounded.readInputFile("samples/sample.csv", 4));
+        assertEquals(modelSize, bounded.getModel().size());
+
+        CsvToRdf failing = new CsvToRdf();
+        failing.setQueueCapacity(1);
+        assertFalse(failing.readInputFile("samples/tooshort.csv", 2));
+        assertEquals("Line 3 too short, should contain 4 fields", failing.getLastErrorMsg());
+
+        assertThrows(IllegalArgumentException.class, () -> bounded.setQueueCapacity(0));
+    }
+
+    /**
+     * Tests that memory-mapped parallel reading produces the same model, with the same
+     * line numbered URIs, as the sequential reader across several byte ranges
+     */
+    @Test
+    public void setMappedInput() throws IOException {
+        File csv = File.createTempFile("mapped", ".csv");
+        csv.deleteOnExit();
+        try (PrintWriter pw = new PrintWriter(csv, "UTF-8")) {
+            pw.println("# comment line");
+            pw.println("Id,Name,Note");
+            for (int i = 0; i < 60000; i++) {
+                pw.print(i + ",\u00c5land " + i + ",\"quoted, \"\"with\"\" commas " + (i % 7) + "\"\r\n");
+            }
+        }
+        CsvToRdf sequential = new CsvToRdf();
+        sequential.setNumSkipLines(1);
+        assertTrue(sequential.readInputFile(csv.getPath(), 1));
+
+        CsvToRdf mapped = new CsvToRdf();
+        mapped.setNumSkipLines(1);
+        mapped.setMappedInput(true);
+        assertTrue(mapped.readInputFile(csv.getPath(), 4));
+        assertNull(mapped.getLastErrorMsg());
+        assertEquals(sequential.getModel().size(), mapped.getModel().size());
+        assertTrue(mapped.getModel().containsAll(sequential.getModel()));
+        Resource last = mapped.getModel().getResource(mapped.getPrefix() + "line59999");
+        assertEquals("59999", last.getProperty(mapped.getProperties().get(0)).getString());
+    }
+
+    /**
+     * Tests that quotes inside unquoted fields are plain text to the mapped reader,
+     * as they are to the tokenizer, so both readers find the same records
+     */
+    @Test
+    public void mappedStrayQuotes() throws IOException {
+        File csv = File.createTempFile("quotes", ".csv");
+        csv.deleteOnExit();
+        try (PrintWriter pw = new PrintWriter(csv, "UTF-8")) {
+            pw.println("Id,Name,Note");
+            for (int i = 0; i < 60000; i++) {
+                String name = (i % 3 == 0) ? "O\"Brien " + i : "Smith " + i;
+                pw.print(i + "," + name + ",\"said \"\"hi\"\"\"\n");
+            }
+        }
+        CsvToRdf sequential = new CsvToRdf();
+        assertTrue(sequential.readInputFile(csv.getPath(), 1));
+
+        CsvToRdf mapped = new CsvToRdf();
+        mapped.setMappedInput(true);
+        assertTrue(mapped.readInputFile(csv.getPath(), 4));
+        assertEquals(60000, mapped.getLastStats().getRows());
+        assertEquals(sequential.getModel().size(), mapped.getModel().size());
+        Resource row = mapped.getModel().getResource(mapped.getPrefix() + "line59997");
+        assertEquals("O\"Brien 59997", row.getProperty(mapped.getProperties().get(1)).getString());
+        assertEquals("said \"hi\"", row.getProperty(mapped.getProperties().get(2)).getString());
+    }
+
+    /**
+     * Tests that lines ending in \\n, \\r\\n or \\r, a last line without terminator and
+     * lines longer than the read buffer convert the same, read sequentially or mapped
+     */
+    @Test
+    public void readLineTerminators() throws IOException {
+        StringBuilder wide = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            wide.append((char) ('a' + i % 26));
+        }
+        for (boolean mapped : new boolean[]{false, true}) {
+            File csv = File.createTempFile("terminators", ".csv");
+            csv.deleteOnExit();
+            try (PrintWriter out = new PrintWriter(csv)) {
+                out.print("Name,Code\r\n");
+                out.print("first,1\n");
+                out.print("second,2\r\n");
+                // The mapped reader only ends lines at \\n
+                out.print(mapped ? "third,3\n" : "third,3\r");
+                out.print("\"" + wide + "\",4\n");
+                out.print("last,5");
+            }
+
+            CsvToRdf program = new CsvToRdf();
+            program.setMappedInput(mapped);
+            program.setBatchSize(2);
+            assertTrue(program.readInputFile(csv.getPath(), 2));
+            Model model = program.getModel();
+            Property name = program.getProperties().get(0);
+            Property code = program.getProperties().get(1);
+            assertEquals(5, model.listStatements(null, code, (RDFNode) null).toList().size());
+            Resource line = model.getResource(program.getPrefix() + "line3");
+            assertEquals(wide.toString(), line.getProperty(name).getString());
+            assertTrue(model.contains(null, name, "last"));
+            assertTrue(model.contains(null, code, "2"));
+        }
+    }
+
+    /**
+     * Tests that gzip and bzip2 input, including a gzip file of several members,
+     * converts to the same model as the plain file, also when mapped input is requested
+     */
+    @Test(timeout = 60000)
+    public void readCompressedInput() throws IOException {
+        CsvToRdf plain = new CsvToRdf();
+        assertTrue(plain.readInputFile("samples/sample.csv", 1));
+        Model expected = plain.getModel();
+        byte[] csv = Files.readAllBytes(Paths.get("samples/sample.csv"));
+        int split = csv.length / 2;
+
+        File gz = File.createTempFile("compressed", ".csv.gz");
+        gz.deleteOnExit();
+        try (OutputStream out = new GzipCompressorOutputStream(new FileOutputStream(gz))) {
+            out.write(csv);
+        }
+        File bz2 = File.createTempFile("compressed", ".csv.bz2");
+        bz2.deleteOnExit();
+        try (OutputStream out = new BZip2CompressorOutputStream(new FileOutputStream(bz2))) {
+            out.write(csv);
+        }
+        // Two gzip members back to back, as written by concatenating .gz files
+        File members = File.createTempFile("members", ".csv.gz");
+        members.deleteOnExit();
+        try (FileOutputStream file = new FileOutputStream(members)) {
+            GzipCompressorOutputStream first = new GzipCompressorOutputStream(file);
+            first.write(csv, 0, split);
+            first.finish();
+            GzipCompressorOutputStream second = new GzipCompressorOutputStream(file);
+            second.write(csv, split, csv.length - split);
+            second.finish();
+        }
+
+        for (File file : new File[]{gz, bz2, members}) {
+            for (boolean mapped : new boolean[]{false, true}) {
+                CsvToRdf program = new CsvToRdf();
+                program.setMappedInput(mapped);
+                assertTrue(program.readInputFile(file.getPath(), 2), file.getName());
+                assertNull(program.getLastErrorMsg());
+                assertEquals(expected.size(), program.getModel().size());
+                assertTrue(program.getModel().containsAll(expected));
+                assertEquals(file.length(), program.getLastStats().getBytesRead());
+            }
+        }
+
+        // Corrupt compressed data fails the conversion instead of hanging the reader
+        for (File file : new File[]{gz, bz2}) {
+            byte[] data = Files.readAllBytes(file.toPath());
+            for (int i = data.length / 3; i < data.length * 2 / 3; i++) {
+                data[i] ^= 0x5a;
+            }
+            File corrupt = File.createTempFile("corrupt", file.getName().substring(file.getName().indexOf('.')));
+            corrupt.deleteOnExit();
+            Files.write(corrupt.toPath(), data);
+            CsvToRdf program = new CsvToRdf();
+            assertFalse(program.readInputFile(corrupt.getPath(), 2), corrupt.getName());
+            assertNotNull(program.getLastErrorMsg());
+        }
+    }
+
+    /**
+     * Tests that a sharded graph holds the same model as the default one, finds by
+     * subject and by pattern, and stays sharded after clearing
+     */
+    @Test
+    public void setShards() {
+        CsvToRdf program = new CsvToRdf();
+        assertTrue(program.readInputFile("samples/sample.csv", 1));
+        Model expected = program.getModel();
+
+        CsvToRdf sharded = new CsvToRdf();
+        sharded.setShards(8);
+        assertTrue(sharded.readInputFile("samples/sample.csv", 4));
+        Model model = sharded.getModel();
+        assertEquals(expected.size(), model.size());
+        assertTrue(model.containsAll(expected));
+        Resource line = model.getResource(sharded.getPrefix() + "line3");
+        assertEquals(expected.getResource(sharded.getPrefix() + "line3").listProperties().toList().size(),
+                     line.listProperties().toList().size());
+        Property name = sharded.getProperties().get(0);
+        assertEquals(expected.listStatements(null, name, (RDFNode) null).toList().size(),
+                     model.listStatements(null, name, (RDFNode) null).toList().size());
+
+        sharded.clearModel();
+        assertEquals(0, sharded.getModel().size());
+        assertTrue(sharded.readInputFile("samples/sample.csv", 2));
+        assertEquals(expected.size(), sharded.getModel().size());
+        assertThrows(IllegalArgumentException.class, () -> sharded.setShards(0));
+    }
+
+    /**
+     * Tests that the compact graph holds the same statements as the default model, alone,
+     * sharded and from the single writer, finds by subject, predicate and object, drops
+     * duplicates and supports removing statements
+     */
+    @Test
+    public void setCompactGraph() {
+        CsvToRdf program = new CsvToRdf();
+        assertTrue(program.readInputFile("samples/sample.csv", 1));
+        Model expected = program.getModel();
+        Property name = program.getProperties().get(0);
+        Statement named = expected.listStatements(null, name, (RDFNode) null).next();
+
+        for (int shards : new int[]{1, 4}) {
+            for (boolean singleWriter : new boolean[]{false, true}) {
+                CsvToRdf compact = new CsvToRdf();
+                compact.setCompactGraph(true);
+                compact.setShards(shards);
+                compact.setSingleWriter(singleWriter);
+                assertTrue(compact.readInputFile("samples/sample.csv", 4));
+                Model model = compact.getModel();
+                assertEquals(expected.size(), model.size());
+                assertTrue(model.containsAll(expected));
+                assertTrue(expected.containsAll(model));
+                assertEquals(expected.getResource(compact.getPrefix() + "line3").listProperties().toList().size(),
+                             model.getResource(compact.getPrefix() + "line3").listProperties().toList().size());
+                assertEquals(expected.listStatements(null, name, (RDFNode) null).toList().size(),
+                             model.listStatements(null, name, (RDFNode) null).toList().size());
+                assertEquals(expected.listStatements(null, null, named.getObject()).toList().size(),
+                             model.listStatements(null, null, named.getObject()).toList().size());
+                assertFalse(model.contains(named.getSubject(), name, "no such value"));
+            }
+        }
+
+        CsvToRdf compact = new CsvToRdf();
+        compact.setCompactGraph(true);
+        assertTrue(compact.readInputFile("samples/sample.csv", 2));
+        assertTrue(compact.readInputFile("samples/sample.csv", 2));
+        Model model = compact.getModel();
+        assertEquals(expected.size(), model.size());
+        model.remove(named);
+        assertFalse(model.contains(named));
+        assertEquals(expected.size() - 1, model.size());
+        model.add(named);
+        assertTrue(model.contains(named));
+
+        compact.clearModel();
+        assertEquals(0, compact.getModel().size());
+        assertTrue(compact.readInputFile("samples/sample.csv", 2));
+        assertEquals(expected.size(), compact.getModel().size());
+    }
+
+    /**
+     * Tests that every supported executor strategy converts and writes the same statements
+     * again and again, that the shared pool keeps its threads between conversions and still
+     * works after a failed one, and that unknown or unsupported strategies are rejected
+     */
+    @Test
+    public void setExecutorStrategy() throws IOException {
+        CsvToRdf program = new CsvToRdf();
+        assertTrue(program.readInputFile("samples/sample.csv", 1));
+        Model expected = program.getModel();
+        File bad = File.createTempFile("bad", ".csv");
+        bad.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(bad)) {
+            out.println("Name,Code");
+            out.println("first,1");
+            out.println("short");
+        }
+
+        for (ExecutorStrategy strategy : ExecutorStrategy.values()) {
+            if (!strategy.isSupported()) {
+                assertThrows(IllegalArgumentException.class, () -> new CsvToRdf().setExecutorStrategy(strategy));
+                continue;
+            }
+            CsvToRdf converter = new CsvToRdf();
+            converter.setExecutorStrategy(strategy);
+            assertEquals(strategy, converter.getExecutorStrategy());
+            for (boolean mapped : new boolean[]{false, true}) {
+                converter.setMappedInput(mapped);
+                for (int run = 0; run < 2; run++) {
+                    converter.clearModel();
+                    assertTrue(converter.readInputFile("samples/sample.csv", 4), strategy + " run " + run);
+                    assertEquals(expected.size(), converter.getModel().size(), strategy.getName());
+                }
+                assertFalse(converter.readInputFile(bad.getPath(), 4));
+            }
+            File nt = File.createTempFile("executor", ".nt");
+            nt.deleteOnExit();
+            converter.outputModel(nt.getPath(), RDFFormat.NTRIPLES, false, 4);
+            Model parsed = ModelFactory.createDefaultModel();
+            RDFDataMgr.read(parsed, nt.getPath(), Lang.NTRIPLES);
+            assertEquals(expected.size(), parsed.size(), strategy.getName());
+            converter.shutdownExecutor();
+        }
+
+        CsvToRdf shared = new CsvToRdf();
+        shared.setExecutorStrategy(ExecutorStrategy.SHARED);
+        assertTrue(shared.readInputFile("samples/sample.csv", 2));
+        long workers = Thread.getAllStackTraces().keySet().stream()
+            .filter(t -> t.getName().startsWith("csvtordf-worker-")).count();
+        assertTrue(workers >= 2);
+        assertFalse(shared.readInputFile(bad.getPath(), 2));
+        shared.clearModel();
+        assertTrue(shared.readInputFile("samples/sample.csv", 2));
+        assertEquals(expected.size(), shared.getModel().size());
+        assertEquals(workers, Thread.getAllStackTraces().keySet().stream()
+            .filter(t -> t.getName().startsWith("csvtordf-worker-")).count());
+        shared.shutdownExecutor();
+
+        assertEquals(ExecutorStrategy.WORK_STEALING, ExecutorStrategy.forName("forkjoin"));
+        assertThrows(IllegalArgumentException.class, () -> ExecutorStrategy.forName("bogus"));
+        assertThrows(IllegalArgumentException.class, () -> shared.setExecutorStrategy(null));
+    }
+
+    /**
+     * Tests that inserting from a single writer thread through the ring buffer loses
+     * nothing with many small batches, alone and with a sharded graph, and reports occupancy
+     */
+    @Test
+    public void setSingleWriter() throws IOException {
+        File csv = File.createTempFile("writer", ".csv");
+        csv.deleteOnExit();
+        CsvGenerator generator = new CsvGenerator();
+        generator.setRows(20000);
+        generator.setColumns(5);
+        generator.generate(csv.getPath());
+
+        CsvToRdf program = new CsvToRdf();
+        assertTrue(program.readInputFile(csv.getPath(), 1));
+        Model expected = program.getModel();
+        assertEquals(0, program.getLastStats().getWriterQueueOccupancy());
+
+        for (int shards : new int[]{1, 4}) {
+            CsvToRdf writer = new CsvToRdf();
+            writer.setSingleWriter(true);
+            writer.setShards(shards);
+            writer.setBatchSize(1);
+            assertTrue(writer.readInputFile(csv.getPath(), 4));
+            assertEquals(expected.size(), writer.getModel().size());
+            assertTrue(writer.getModel().containsAll(expected));
+            ConversionStats stats = writer.getLastStats();
+            assertTrue(stats.getWriterQueueOccupancy() >= 0 && stats.getWriterQueueOccupancy() <= 1);
+            assertTrue(stats.toString().contains("Writer queue"));
+        }
+    }
+
+    /**
+     * Tests that a custom sink receives the same triples as the model, and the model stays empty
+     */
+    @Test
+    public void convertToSink() {
+        CsvToRdf program = new CsvToRdf();
+        assertTrue(program.readInputFile("samples/sample.csv", 1));
+        Model expected = program.getModel();
+
+        CsvToRdf direct = new CsvToRdf();
+        Model received = ModelFactory.createDefaultModel();
+        TripleSink sink = new TripleSink() {
+            public void start() {}
+            public synchronized void accept(Triple[] batch) {
+                for (Triple t : batch) received.getGraph().add(t);
+            }
+            public void finish() {}
+        };
+        assertTrue(direct.convertToSink("samples/sample.csv", 2, sink));
+        assertEquals(0, direct.getModel().size());
+        assertEquals(expected.size(), received.size());
+        assertTrue(expected.containsAll(received));
+    }
+
+    /**
+     * Tests that gzip output on stdout is not mixed with status lines, with and without streaming
+     */
+    @Test
+    public void mainGzipStdout() throws IOException {
+        CsvToRdf program = new CsvToRdf();
+        assertTrue(program.readInputFile("samples/sample.csv", 1));
+        long expected = program.getModel().size();
+
+        PrintStream stdout = System.out;
+        PrintStream log = CsvToRdf.g_log;
+        for (boolean stream : new boolean[]{false, true}) {
+            ByteArrayOutputStream captured = new ByteArrayOutputStream();
+            System.setOut(new PrintStream(captured, true));
+            try {
+                CsvToRdf.main(stream ? new String[]{"-c", "samples/sample.csv", "-z", "-s"}
+                                     : new String[]{"-c", "samples/sample.csv", "-z"});
+            } finally {
+                System.setOut(stdout);
+                CsvToRdf.g_log = log;
+            }
+            Model parsed = ModelFactory.createDefaultModel();
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(captured.toByteArray()))) {
+                RDFDataMgr.read(parsed, in, Lang.RDFXML);
+            }
+            assertEquals(expected, parsed.size(), stream ? "stream" : "model");
+        }
+    }
+
+    /**
+     * Tests that an Error thrown by the sink fails the conversion instead of hanging the reader
+     */
+    @Test(timeout = 60000)
+    public void sinkError() throws IOException {
+        File csv = File.createTempFile("error", ".csv");
+        csv.deleteOnExit();
+        CsvGenerator generator = new CsvGenerator();
+        generator.setRows(20000);
+        generator.generate(csv.getPath());
+        CsvToRdf program = new CsvToRdf();
+        program.setBatchSize(16);
+        program.setQueueCapacity(2);
+        AtomicInteger accepted = new AtomicInteger();
+        TripleSink sink = new TripleSink() {
+            public void start() {}
+            public void accept(Triple[] batch) {
+                // The first batch holds the class declarations
+                if (accepted.incrementAndGet() == 2) throw new StackOverflowError("sink failed");
+            }
+            public void finish() {}
+        };
+        // With one worker nothing else drains the queue once it is gone
+        assertFalse(program.convertToSink(csv.getPath(), 1, sink));
+        assertTrue(program.getLastErrorMsg().contains("sink failed"));
+    }
+
+    /**
+     * Tests that cancelling stops a running conversion, sequential and memory-mapped
+     */
+    @Test
+    public void cancel() throws IOException {
+        File csv = File.createTempFile("cancel", ".csv");
+        csv.deleteOnExit();
+        CsvGenerator generator = new CsvGenerator();
+        generator.setRows(300000);
+        generator.generate(csv.getPath());
+        for (boolean mapped : new boolean[]{false, true}) {
+            CsvToRdf program = new CsvToRdf();
+            program.cancel(); // nothing running, no effect on the next conversion
+            program.setMappedInput(mapped);
+            program.setProgressInterval(1);
+            program.setProgressListener(p -> program.cancel());
+            assertFalse(program.readInputFile(csv.getPath(), 2));
+            assertEquals("Conversion cancelled", program.getLastErrorMsg());
+            assertTrue(program.getModel().size() < 300000L * 10);
+        }
+
+        // Cancelling while the sink starts or finishes still fails the conversion
+        for (boolean onFinish : new boolean[]{false, true}) {
+            CsvToRdf program = new CsvToRdf();
+            TripleSink sink = new TripleSink() {
+                public void start() { if (!onFinish) program.cancel(); }
+                public void accept(Triple[] batch) {}
+                public void finish() { if (onFinish) program.cancel(); }
+            };
+            assertFalse(program.convertToSink("samples/sample.csv", 2, sink));
+            assertEquals("Conversion cancelled", program.getLastErrorMsg());
+        }
+    }
+
+    /**
+     * Tests that converting into a TDB store loads the same triples as the in-memory model
+     */
+    @Test
+    public void setTdbDirectory() throws IOException {
+        CsvToRdf program = new CsvToRdf();
+        program.readInputFile("samples/sample.csv", 1);
+        long modelSize = program.getModel().size();
+
+        File dir = Files.createTempDirectory("tdb").toFile();
+        CsvToRdf tdb = new CsvToRdf();
+        tdb.setTdbDirectory(dir.getPath());
+        assertTrue(tdb.readInputFile("samples/sample.csv", 2));
+        assertNotNull(tdb.getDataset());
+        long tdbSize = Txn.calculateRead(tdb.getDataset(), () -> tdb.getModel().size());
+        assertEquals(modelSize, tdbSize);
+
+        // Output is read inside a transaction
+        File file = new File("testOutputFile");
+        file.delete();
+        tdb.outputModel("testOutputFile");
+        assertTrue(file.exists());
+    }
+
+    /**
+     * Tests that interning object nodes does not change the model, and that repeated
+     * values are served from the cache
+     */
+    @Test
+    public void setNodeCacheSize() throws IOException {
+        File csv = File.createTempFile("categorical", ".csv");
+        csv.deleteOnExit();
+        try (PrintWriter pw = new PrintWriter(csv, "UTF-8")) {
+            pw.println("Id,Color,Size");
+            for (int i = 0; i < 1000; i++) {
+                pw.println(i + ",color" + (i % 5) + "," + (i % 3));
+            }
+        }
+        CsvToRdf uncached = new CsvToRdf();
+        uncached.setNodeCacheSize(0);
+        uncached.initModel(new String[]{"Id", "Color", "Size"});
+        uncached.setDatatypes(uncached.getProperties().get(1), false, "Color");
+        assertTrue(uncached.readInputFile(csv.getPath(), 2));
+        assertEquals(0, uncached.getLastCacheHits());
+
+        CsvToRdf cached = new CsvToRdf();
+        cached.initModel(new String[]{"Id", "Color", "Size"});
+        cached.setDatatypes(cached.getProperties().get(1), false, "Color");
+        assertTrue(cached.readInputFile(csv.getPath(), 2));
+        assertEquals(uncached.getModel().size(), cached.getModel().size());
+        assertTrue(cached.getModel().containsAll(uncached.getModel()));
+        assertTrue(cached.getLastCacheHits() > 0);
+        assertEquals(3000, cached.getLastCacheHits() + cached.getLastCacheMisses());
+    }
+
+    /**
+     * Tests that the narrowest fitting datatype is inferred for each column
+     */
+    @Test
+    public void inferDatatypes() throws IOException {
+        File csv = File.createTempFile("typed", ".csv");
+        csv.deleteOnExit();
+        try (PrintWriter pw = new PrintWriter(csv, "UTF-8")) {
+            pw.println("Flag,Small,Big,Price,Ratio,Day,Link,Name,Bit");
+            pw.println("true,1,3000000000,1.50,1e3,2020-01-31,http://example.com/a,alpha,1");
+            pw.println("false,-2,4,2,0.5,2020-02-01,http://example.com/b,beta,0");
+            // Empty cells do not widen the inferred type
+            pw.println("true,,5,3,2.5,,http://example.com/c,,1");
+        }
+        CsvToRdf program = new CsvToRdf();
+        assertTrue(program.inferDatatypes(csv.getPath(), 100));
+        ArrayList<Property> properties = program.getProperties();
+        // 0 and 1 are valid booleans too, but a column of them is inferred as integers
+        String[] expected = {"boolean", "int", "long", "decimal", "double", "date", "", "string", "int"};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], program.getDatatype(properties.get(i)));
+        }
+        assertFalse(program.isLiteral(properties.get(6)));
+
+        // Inferred resources link to the IRI as it is
+        assertTrue(program.readInputFile(csv.getPath(), 1));
+        assertTrue(program.getModel().contains(null, properties.get(6),
+                program.getModel().getResource("http://example.com/a")));
+
+        // Resource columns set by the user still prefix cells that look like IRIs
+        CsvToRdf declared = new CsvToRdf();
+        declared.initModel(new String[]{"Flag", "Small", "Big", "Price", "Ratio", "Day", "Link", "Name", "Bit"});
+        Property link = declared.getProperties().get(6);
+        declared.setDatatypes(link, false, "");
+        assertTrue(declared.readInputFile(csv.getPath(), 1));
+        assertTrue(declared.getModel().contains(null, link,
+                declared.getModel().getResource(declared.getPrefix() + "http://example.com/a")));
+        assertFalse(declared.getModel().contains(null, link,
+                declared.getModel().getResource("http://example.com/a")));
+        declared.clearModel();
+        declared.initModel(new String[]{"Flag", "Small", "Big", "Price", "Ratio", "Day", "Link", "Name", "Bit"});
+        link = declared.getProperties().get(6);
+        declared.setDatatypes(link, false, "");
+        declared.markKeepIris(link);
+        assertTrue(declared.readInputFile(csv.getPath(), 1));
+        assertTrue(declared.getModel().contains(null, link,
+                declared.getModel().getResource("http://example.com/a")));
+    }
+
+    /**
+     * Tests that fixed and adaptive batch sizes produce the same model
+     */
+    @Test
+    public void setBatchSize() {
+        CsvToRdf program = new CsvToRdf();
+        program.readInputFile("samples/sample.csv", 1);
+        long modelSize = program.getModel().size();
+
+        CsvToRdf small = new CsvToRdf();
+        small.setBatchSize(7);
+        assertTrue(small.readInputFile("samples/sample.csv", 3));
+        assertEquals(modelSize, small.getModel().size());
+        assertEquals(7, small.getLastBatchSize());
+
+        CsvToRdf adaptive = new CsvToRdf();
+        adaptive.setAdaptiveBatching(true);
+        assertTrue(adaptive.readInputFile("samples/sample.csv", 3));
+        assertEquals(modelSize, adaptive.getModel().size());
+        assertTrue(adaptive.getLastBatchSize() > 0);
+
+        assertThrows(IllegalArgumentException.class, () -> small.setBatchSize(0));
+    }
+
     /* Tests relating to our "stretch goal" features */
 
     /**
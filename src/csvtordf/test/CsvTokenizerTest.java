@@ -0,0 +1,67 @@
+package csvtordf.test;
+
+import org.junit.Test;
+import csvtordf.main.CsvTokenizer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvTokenizerTest {
+
+    /**
+     * Tests that plain fields are split on commas, keeping empty fields
+     */
+    @Test
+    public void splitPlain() {
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        assertArrayEquals(new String[]{"a", "b", "c"}, tokenizer.split("a,b,c"));
+        assertArrayEquals(new String[]{"", "b", ""}, tokenizer.split(",b,"));
+        assertArrayEquals(new String[]{""}, tokenizer.split(""));
+    }
+
+    /**
+     * Tests that quotes are stripped, embedded commas are kept and escaped quotes are collapsed
+     */
+    @Test
+    public void splitQuoted() {
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        assertArrayEquals(new String[]{"Taiwan, Province of China", "TW"},
+                tokenizer.split("\"Taiwan, Province of China\",TW"));
+        assertArrayEquals(new String[]{"say \"hi\"", ""}, tokenizer.split("\"say \"\"hi\"\"\",\"\""));
+        assertArrayEquals(new String[]{"a\"b", "c"}, tokenizer.split("a\"b,c"));
+    }
+
+    /**
+     * Tests that the field buffers grow for wide lines and are reused between lines
+     */
+    @Test
+    public void tokenizeWide() {
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 250; i++) {
+            if (i > 0) line.append(',');
+            line.append(i);
+        }
+        assertEquals(250, tokenizer.tokenize(line));
+        assertEquals("249", tokenizer.field(249));
+        assertEquals(2, tokenizer.tokenize("x,y"));
+        assertEquals("y", tokenizer.field(1));
+    }
+
+    /**
+     * Tests that part of a char array tokenizes into offsets of the field buffer,
+     * unquoted, without touching the chars around the line
+     */
+    @Test
+    public void tokenizeChars() {
+        CsvTokenizer tokenizer = new CsvTokenizer();
+        char[] chars = "skip\n\"a,\"\"b\"\"\",c,\nnext".toCharArray();
+        int from = 5;
+        int to = chars.length - 5;
+        assertEquals(3, tokenizer.tokenize(chars, from, to));
+        char[] buffer = tokenizer.buffer();
+        assertEquals("a,\"b\"", new String(buffer, tokenizer.start(0), tokenizer.length(0)));
+        assertEquals("c", new String(buffer, tokenizer.start(1), tokenizer.length(1)));
+        assertEquals(0, tokenizer.length(2));
+        assertEquals("c", tokenizer.field(1));
+    }
+}
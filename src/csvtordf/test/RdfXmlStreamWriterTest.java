@@ -0,0 +1,110 @@
+package csvtordf.test;
+
+import org.apache.jena.datatypes.xsd.XSDDatatype;
+import org.apache.jena.graph.Graph;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.system.StreamRDFOps;
+import org.apache.jena.sparql.graph.GraphFactory;
+import org.apache.jena.vocabulary.RDF;
+import org.junit.Test;
+import csvtordf.main.CsvToRdf;
+import csvtordf.main.RdfXmlStreamWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RdfXmlStreamWriterTest {
+
+    /**
+     * Tests that blank nodes, language tags, datatypes, undeclared namespaces and
+     * characters needing escapes read back as the same graph
+     */
+    @Test
+    public void roundTrip() {
+        Graph graph = GraphFactory.createDefaultGraph();
+        Node s = NodeFactory.createURI("http://example.org/csv#line0?a=1&b=\"2\"");
+        Node b = NodeFactory.createBlankNode();
+        Node p = NodeFactory.createURI("http://example.org/csv#Name");
+        Node other = NodeFactory.createURI("http://other.example/vocab/count");
+        graph.add(new Triple(s, RDF.type.asNode(), NodeFactory.createURI("http://example.org/csv#CsvNode")));
+        graph.add(new Triple(s, p, NodeFactory.createLiteral("Na&</Name>&amp\r\n\"me\"")));
+        graph.add(new Triple(s, p, NodeFactory.createLiteral("\u00c5land", "sv")));
+        graph.add(new Triple(s, other, NodeFactory.createLiteral("42", XSDDatatype.XSDinteger)));
+        graph.add(new Triple(s, other, b));
+        graph.add(new Triple(b, p, NodeFactory.createLiteral("blank")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RdfXmlStreamWriter writer = new RdfXmlStreamWriter(out);
+        writer.start();
+        writer.prefix("csv", "http://example.org/csv#");
+        StreamRDFOps.sendTriplesToStream(graph, writer);
+        writer.finish();
+
+        Model parsed = ModelFactory.createDefaultModel();
+        RDFDataMgr.read(parsed, new ByteArrayInputStream(out.toByteArray()), Lang.RDFXML);
+        assertTrue(parsed.getGraph().isIsomorphicWith(graph));
+        assertTrue(out.toString().contains("xmlns:csv=\"http://example.org/csv#\""));
+    }
+
+    /**
+     * Tests that streaming a conversion as RDF/XML writes every statement of the model,
+     * including headers that need escaping
+     */
+    @Test
+    public void convertToStream() {
+        for (String csv : new String[]{"samples/sample.csv", "samples/malicious.csv"}) {
+            CsvToRdf program = new CsvToRdf();
+            assertTrue(program.readInputFile(csv, 1));
+            long modelSize = program.getModel().size();
+
+            CsvToRdf streamer = new CsvToRdf();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertTrue(streamer.convertToStream(csv, 2, out, Lang.RDFXML));
+            Model parsed = ModelFactory.createDefaultModel();
+            RDFDataMgr.read(parsed, new ByteArrayInputStream(out.toByteArray()), Lang.RDFXML);
+            assertEquals(modelSize, parsed.size(), csv);
+        }
+    }
+
+    /**
+     * Tests that each row is written as a single rdf:Description when its cells create
+     * typed resources, whose type triples must not split the row
+     */
+    @Test
+    public void oneDescriptionPerRow() throws IOException {
+        File csv = File.createTempFile("typed", ".csv");
+        csv.deleteOnExit();
+        try (PrintWriter pw = new PrintWriter(csv, "UTF-8")) {
+            pw.println("Id,Color,Size");
+            for (int i = 0; i < 100; i++) {
+                pw.println(i + ",color" + (i % 5) + "," + (i % 3));
+            }
+        }
+        CsvToRdf program = new CsvToRdf();
+        program.setNodeCacheSize(0);
+        program.initModel(new String[]{"Id", "Color", "Size"});
+        program.setDatatypes(program.getProperties().get(1), false, "Color");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(program.convertToStream(csv.getPath(), 2, out, Lang.RDFXML));
+
+        Matcher rows = Pattern.compile("rdf:about=\"[^\"]*#line\\d+\"").matcher(out.toString("UTF-8"));
+        int descriptions = 0;
+        while (rows.find()) {
+            descriptions++;
+        }
+        assertEquals(100, descriptions);
+    }
+}